@@ -0,0 +1,221 @@
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of building codes and of encoding and decoding messages with them.
+ * Codes are given as hamming-r or rm-k-r, and every benchmark builds its own code rather than
+ * taking one from ECCFactory, so that construction is always measured in full.
+ * <p>
+ * Throughput is in operations per second, where an operation is one whole message, so bits per second is
+ * the score times the message size. Run with -prof gc for the allocation rate. The full matrix of parameters
+ * takes hours, so narrow it with -p, for instance -p code=hamming-4,rm-5-2 -p messageBits=1048576.
+ * Construction and coding both go up to RM(14, 7), which builds in a few seconds. Blocks with errors beyond its
+ * syndrome table are corrected by majority logic at about half a second each, so an operation on the largest
+ * message then takes minutes.
+ */
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ECCBenchmarks {
+
+    /**
+     * A code and a random message, with the message encoded once up front
+     */
+    @State(Scope.Benchmark)
+    public static class Message {
+        @Param({"hamming-2", "hamming-3", "hamming-4", "hamming-5", "hamming-6", "hamming-7", "hamming-8", "hamming-9",
+                "hamming-10", "hamming-11", "hamming-12", "hamming-13", "hamming-14", "hamming-15", "hamming-16",
+                "rm-2-1", "rm-4-1", "rm-5-2", "rm-5-3", "rm-6-2", "rm-7-3", "rm-8-4", "rm-9-4", "rm-10-5",
+                "rm-12-6", "rm-14-7"})
+        public String code;
+
+        @Param({"4096", "1048576", "16777216"})
+        public int messageBits;
+
+        ECC ecc;
+        int codeBits;
+        long[] plaintext;
+        long[] codetext;
+        long[] decoded;
+        BitSet plainBits;
+
+        @Setup(Level.Trial)
+        public void setUp() throws InvalidParameterException {
+            ecc = makeCode(code);
+            int blocks = (messageBits + ecc.getDimension() - 1) / ecc.getDimension();
+            codeBits = blocks * ecc.getLength();
+
+            Random random = new Random(messageBits);
+            plaintext = new long[BitMatrix.words(messageBits)];
+            for (int w = 0; w < plaintext.length; w++) plaintext[w] = random.nextLong();
+            if ((messageBits & 63) != 0) plaintext[plaintext.length - 1] &= BitMatrix.mask(messageBits & 63);
+            plainBits = BitSet.valueOf(plaintext);
+
+            codetext = new long[BitMatrix.words(codeBits)];
+            decoded = new long[BitMatrix.words(blocks * ecc.getDimension())];
+            ecc.encode(plaintext, 0, messageBits, codetext, 0);
+        }
+    }
+
+    /**
+     * A message encoded with a number of errors in every block: none, one, or t, the most that can be corrected.
+     * No block has more than t errors, so that decodeIfUnique succeeds, which means codes of distance 2
+     * (such as RM(k, k - 1)) get no errors at all.
+     */
+    @State(Scope.Benchmark)
+    public static class Received extends Message {
+        @Param({"0", "1", "t"})
+        public String errors;
+
+        BitSet codeBitSet;
+
+        @Setup(Level.Trial)
+        public void injectErrors() {
+            int t = (ecc.getDistance() - 1) / 2;
+            int perBlock = errors.equals("t") ? t : Math.min(t, Integer.parseInt(errors));
+            Random random = new Random(codeBits);
+
+            for (int start = 0; start < codeBits; start += ecc.getLength()) {
+                //Chooses distinct positions, so that no error undoes another
+                BitSet flipped = new BitSet(ecc.getLength());
+                while (flipped.cardinality() < perBlock) {
+                    flipped.set(random.nextInt(ecc.getLength()));
+                }
+                for (int pos = flipped.nextSetBit(0); pos >= 0; pos = flipped.nextSetBit(pos + 1)) {
+                    codetext[(start + pos) >>> 6] ^= 1L << (start + pos);
+                }
+            }
+
+            codeBitSet = BitSet.valueOf(codetext);
+        }
+    }
+
+    /**
+     * A Reed-Muller code set to encode blocks either by the Plotkin construction or by the parity part
+     * of its generator matrix, so that the two can be compared whichever the code would choose, and a random message
+     */
+    @State(Scope.Benchmark)
+    public static class Encoding {
+        @Param({"rm-5-2", "rm-7-3", "rm-8-4", "rm-10-5", "rm-12-6", "rm-14-7"})
+        public String code;
+
+        @Param({"false", "true"})
+        public boolean plotkin;
+
+        @Param({"1048576"})
+        public int messageBits;
+
+        ReedMullerCode ecc;
+        long[] plaintext;
+        long[] codetext;
+        BitSet plainBits;
+
+        @Setup(Level.Trial)
+        public void setUp() throws InvalidParameterException {
+            ecc = ((ReedMullerCode) makeCode(code)).withPlotkinEncoding(plotkin);
+            int blocks = (messageBits + ecc.getDimension() - 1) / ecc.getDimension();
+
+            Random random = new Random(messageBits);
+            plaintext = new long[BitMatrix.words(messageBits)];
+            for (int w = 0; w < plaintext.length; w++) plaintext[w] = random.nextLong();
+            plainBits = BitSet.valueOf(plaintext);
+            codetext = new long[BitMatrix.words(blocks * ecc.getLength())];
+        }
+    }
+
+    /**
+     * A code to build, named as for Message
+     */
+    @State(Scope.Benchmark)
+    public static class Construction {
+        @Param({"hamming-2", "hamming-4", "hamming-8", "hamming-12", "hamming-16",
+                "rm-2-1", "rm-4-1", "rm-5-2", "rm-5-3", "rm-6-2", "rm-7-3", "rm-8-4", "rm-9-4", "rm-10-5",
+                "rm-12-6", "rm-14-7"})
+        public String code;
+    }
+
+    /**
+     * Builds a code from its name
+     * @param code - hamming-r or rm-k-r
+     * @return - the code
+     * @throws InvalidParameterException - if the parameters are invalid
+     */
+    static ECC makeCode(String code) throws InvalidParameterException {
+        String[] parts = code.split("-");
+        if (parts[0].equals("hamming")) return new HammingCode(Integer.parseInt(parts[1]));
+        return new ReedMullerCode(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public ECC construct(Construction state) throws InvalidParameterException {
+        return makeCode(state.code);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int encode(Message state) {
+        return state.ecc.encode(state.plaintext, 0, state.messageBits, state.codetext, 0);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int decodeAlways(Received state) {
+        return state.ecc.decodeAlways(state.codetext, 0, state.codeBits, state.decoded, 0);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int decodeIfUnique(Received state) throws UncorrectableErrorException {
+        return state.ecc.decodeIfUnique(state.codetext, 0, state.codeBits, state.decoded, 0);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public BitSet encodeBitSet(Message state) {
+        return state.ecc.encode(state.plainBits, state.messageBits);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public BitSet decodeAlwaysBitSet(Received state) {
+        return state.ecc.decodeAlways(state.codeBitSet, state.codeBits);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int encodeBlocks(Encoding state) {
+        return state.ecc.encode(state.plaintext, 0, state.messageBits, state.codetext, 0);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public BitSet encodePlain(Encoding state) {
+        //Plain codewords always come from the Plotkin construction, so both settings of plotkin measure the same
+        return state.ecc.encode(state.plainBits, state.messageBits, false);
+    }
+}
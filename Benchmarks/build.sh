@@ -0,0 +1,4 @@
+#!/bin/bash
+JMHPATH=${JMHPATH:-$(dirname "$0")/../lib}
+mkdir -p out
+javac --add-modules jdk.incubator.vector -cp "$JMHPATH/*" -processorpath "$JMHPATH/*" -d out ../src/*.java ECCBenchmarks.java
@@ -0,0 +1,3 @@
+#!/bin/bash
+JMHPATH=${JMHPATH:-$(dirname "$0")/../lib}
+java --add-modules jdk.incubator.vector -cp "out:$JMHPATH/*" org.openjdk.jmh.Main ECCBenchmarks -prof gc "$@"
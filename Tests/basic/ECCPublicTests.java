@@ -1,6 +1,23 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.BitSet;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 
 import org.junit.jupiter.api.Test;
@@ -233,6 +250,644 @@ class ECCPublicTests {
         testEncDecThreeErrors(reedMullerCode);
     }
 
+    /**
+     * Tests that a code with a syndrome too wide to index the table directly
+     * still corrects errors through the hashed syndrome table
+     */
+    @Test
+    void testWideSyndromeTable() {
+        ECCFactory eccFactory = new ECCFactory();
+        ReedMullerCode reedMullerCode = (ReedMullerCode) eccFactory.makeReedMullerCode(7, 4);
+        assertFalse(reedMullerCode.getSynTable().isDirect());
+        testEncDecThreeErrors(reedMullerCode);
+    }
+
+    /**
+     * Tests that a syndrome table cut short by its memory budget still corrects
+     * the errors it does not hold
+     */
+    @Test
+    void testBudgetedSynTable() {
+        ECCFactory eccFactory = new ECCFactory();
+        ReedMullerCode reedMullerCode = (ReedMullerCode) eccFactory.makeReedMullerCode(5, 2, 4096);
+        assertTrue(reedMullerCode.getSynTable().getCoveredWeight() < (reedMullerCode.getDistance() - 1) / 2);
+        testEncDecThreeErrors(reedMullerCode);
+    }
+
+    /**
+     * Tests that a syndrome table large enough to be built in parallel holds the same entries as one built serially,
+     * including when the budget leaves too little room to compute every group ahead
+     */
+    @Test
+    void testParallelSynTable() throws InvalidParameterException {
+        ReedMullerCode reedMullerCode = (ReedMullerCode) f.makeReedMullerCode(7, 2);
+        int synLen = reedMullerCode.getLength() - reedMullerCode.getDimension();
+        long tableBytes = SyndromeTable.bytes(synLen, reedMullerCode.getLength(), reedMullerCode.getSynTable().size());
+        ReedMullerCode tightCode = new ReedMullerCode(7, 2, tableBytes + 100000);
+
+        for (ReedMullerCode c : new ReedMullerCode[] {reedMullerCode, tightCode}) {
+            SyndromeTable serial = c.genSynTable(false);
+            SyndromeTable parallel = c.genSynTable(true);
+            assertTrue(serial.size() >= 1 << 15);
+            assertEquals(serial.size(), parallel.size());
+            assertEquals(serial.getCoveredWeight(), parallel.getCoveredWeight());
+
+            for (BitSet syndrome : serial.syndromes()) {
+                long[] words = BitMatrix.toWords(syndrome, synLen);
+                long[] serialLeader = new long[BitMatrix.words(c.getLength())];
+                long[] parallelLeader = new long[BitMatrix.words(c.getLength())];
+                serial.xorLeader(serial.find(words), serialLeader);
+                parallel.xorLeader(parallel.find(words), parallelLeader);
+                assertArrayEquals(serialLeader, parallelLeader);
+            }
+        }
+    }
+
+
+    void testEncDecErrorsPerBlock(IECC c, int errors) throws UncorrectableErrorException {
+        Random ran = new Random(errors);
+        for (int i = 1; i < MAX_VEC_LEN * c.getDimension(); i += c.getDimension()) {
+            BitSet p = randomVector(i);
+            int enclen = encodedLength(c, i);
+            BitSet ciph = c.encode(p, i);
+
+            //Flips the given number of distinct bits in every block
+            for (int block = 0; block < enclen; block += c.getLength()) {
+                ArrayList<Integer> errpos = new ArrayList<>();
+                while (errpos.size() < errors) {
+                    int errno = block + ran.nextInt(c.getLength());
+                    if (!errpos.contains(errno)) {
+                        errpos.add(errno);
+                        ciph.flip(errno);
+                    }
+                }
+            }
+            assertEquals(p, c.decodeAlways(ciph, enclen), c.toString() + " does not decode " + errors + " errors");
+            assertEquals(p, c.decodeIfUnique(ciph, enclen), c.toString() + " does not decode " + errors + " errors");
+        }
+    }
+
+    /**
+     * Tests that Reed-Muller codes too large for a syndrome table correct
+     * (d - 1) / 2 errors in every block by majority-logic decoding
+     */
+    @Test
+    void testMajorityLogicDecoding() throws UncorrectableErrorException {
+        ECCFactory eccFactory = new ECCFactory();
+        ReedMullerCode reedMullerCode = (ReedMullerCode) eccFactory.makeReedMullerCode(8, 2, 0);
+        testEncDecErrorsPerBlock(reedMullerCode, (reedMullerCode.getDistance() - 1) / 2);
+        reedMullerCode = (ReedMullerCode) eccFactory.makeReedMullerCode(6, 0, 0);
+        testEncDecErrorsPerBlock(reedMullerCode, (reedMullerCode.getDistance() - 1) / 2);
+    }
+
+    /**
+     * Tests that decode always returns promptly when the syndrome table is cut short, or holds nothing at all,
+     * and blocks have far more than (d - 1) / 2 errors, rather than searching every error pattern beyond the table
+     */
+    @Test
+    void testDecAlwaysHeavyErrors() throws InvalidParameterException {
+        ReedMullerCode[] codes = {(ReedMullerCode) f.makeReedMullerCode(6, 2), new ReedMullerCode(8, 2, 0)};
+        int[] errors = {12, 40};
+        Random random = new Random(12);
+
+        for (int i = 0; i < codes.length; i++) {
+            ReedMullerCode reedMullerCode = codes[i];
+            assertFalse(reedMullerCode.getSynTable().isComplete());
+            BitSet plaintext = randomVector(reedMullerCode.getDimension());
+            BitSet codetext = reedMullerCode.encode(plaintext, reedMullerCode.getDimension());
+
+            BitSet flipped = new BitSet(reedMullerCode.getLength());
+            while (flipped.cardinality() < errors[i]) flipped.set(random.nextInt(reedMullerCode.getLength()));
+            codetext.xor(flipped);
+
+            BitSet decoded = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> reedMullerCode.decodeAlways(codetext, reedMullerCode.getLength()));
+            assertNotNull(decoded);
+        }
+    }
+
+    /**
+     * Tests that decode always corrects random blocks to the closest codeword, found by comparing with every codeword,
+     * when the syndrome table is cut short and the block is within (d - 1) / 2 of a codeword
+     */
+    @Test
+    void testDecAlwaysClosestCodeword() throws InvalidParameterException {
+        ECC[] codes = {new ReedMullerCode(4, 2, 0), new ReedMullerCode(5, 2, 0), new ReedMullerCode(5, 2, 2048)};
+        Random random = new Random(6);
+
+        for (ECC c : codes) {
+            //Lists every codeword, adding one row of the generator matrix at a time in Gray code order
+            ArrayList<BitSet> genMatrix = c.getGenMatrix();
+            long[] codewords = new long[1 << c.getDimension()];
+            for (int i = 1; i < codewords.length; i++) {
+                long row = BitMatrix.toWords(genMatrix.get(Integer.numberOfTrailingZeros(i)), c.getLength())[0];
+                codewords[i] = codewords[i - 1] ^ row;
+            }
+
+            for (int trial = 0; trial < 100; trial++) {
+                long received = random.nextLong() >>> (64 - c.getLength());
+                int closest = c.getLength();
+                for (long codeword : codewords) closest = Math.min(closest, Long.bitCount(codeword ^ received));
+
+                BitSet decoded = c.decodeAlways(BitSet.valueOf(new long[] {received}), c.getLength());
+                long codeword = BitMatrix.toWords(c.encode(decoded, c.getDimension()), c.getLength())[0];
+                if (closest <= (c.getDistance() - 1) / 2) {
+                    assertEquals(closest, Long.bitCount(codeword ^ received), c.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that first order Reed-Muller codes are built without a syndrome table and correct
+     * (d - 1) / 2 errors in every block by the Hadamard transform
+     */
+    @Test
+    void testHadamardDecoding() throws UncorrectableErrorException {
+        ECCFactory eccFactory = new ECCFactory();
+        ReedMullerCode reedMullerCode = (ReedMullerCode) eccFactory.makeReedMullerCode(8, 1);
+        assertNull(reedMullerCode.getSynTable());
+        testEncDecErrorsPerBlock(reedMullerCode, (reedMullerCode.getDistance() - 1) / 2);
+    }
+
+    /**
+     * Tests that splitting a message into block ranges gives the same result as a serial pass
+     */
+    @Test
+    void testParallelBlocks() throws UncorrectableErrorException {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        IECC[] codes = {f.makeHammingCode(5), f.makeReedMullerCode(6, 2), f.makeReedMullerCode(7, 1)};
+
+        for (IECC c : codes) {
+            ECC code = (ECC) c;
+            int len = c.getDimension() * 1000 + 7;
+            BitSet p = randomVector(len);
+            int enclen = encodedLength(c, len);
+
+            BitSet serial = code.withParallelThreshold(Integer.MAX_VALUE).encode(p, len);
+            for (int i = 0; i < enclen; i += c.getLength()) serial.flip(i + (i / c.getLength()) % c.getLength());
+
+            ECC parallelCode = code.withParallelThreshold(1).withExecutor(executor);
+            BitSet parallel = parallelCode.encode(p, len);
+            for (int i = 0; i < enclen; i += c.getLength()) parallel.flip(i + (i / c.getLength()) % c.getLength());
+            assertEquals(serial, parallel);
+            assertEquals(p, parallelCode.decodeAlways(parallel, enclen));
+            assertEquals(p, parallelCode.decodeIfUnique(parallel, enclen));
+
+            assertEquals(p, code.withParallelThreshold(1).decodeAlways(parallel, enclen));
+            assertNull(code.getExecutor());
+            assertEquals(ECC.PARALLEL_BLOCKS, code.getParallelThreshold());
+        }
+
+        executor.shutdown();
+    }
+
+    /**
+     * Tests that the streams encode a message in bounded chunks exactly as encode does, and decode it back
+     */
+    @Test
+    void testStreams() throws IOException {
+        IECC[] codes = {f.makeHammingCode(3), f.makeHammingCode(5), f.makeReedMullerCode(5, 2)};
+
+        for (IECC c : codes) {
+            byte[] message = new byte[c.getDimension() * 100 + 3];
+            new Random(c.getLength()).nextBytes(message);
+
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            try (ECCOutputStream out = new ECCOutputStream(encoded, c, 64)) {
+                out.write(message, 0, 5);
+                out.write(message[5]);
+                out.write(message, 6, message.length - 6);
+            }
+
+            int len = message.length * 8;
+            BitSet expected = c.encode(BitSet.valueOf(message), len);
+            assertEquals(expected, BitSet.valueOf(encoded.toByteArray()));
+            assertEquals((encodedLength(c, len) + 7) / 8, encoded.size());
+
+            byte[] codetext = encoded.toByteArray();
+            codetext[2] ^= 4;
+            byte[] decoded;
+            try (ECCInputStream in = new ECCInputStream(new ByteArrayInputStream(codetext), c, true, 64)) {
+                decoded = in.readAllBytes();
+            }
+
+            //Only zero padding may follow the message
+            assertArrayEquals(message, Arrays.copyOf(decoded, message.length));
+            for (int i = message.length; i < decoded.length; i++) assertEquals(0, decoded[i]);
+        }
+    }
+
+    /**
+     * Tests that mapped files are encoded as the streams encode them and decode back
+     */
+    @Test
+    void testFileCodec() throws IOException, UncorrectableErrorException {
+        ECC c = (ECC) f.makeReedMullerCode(4, 1);
+        byte[] message = new byte[1001];
+        new Random(4).nextBytes(message);
+
+        Path input = Files.createTempFile("ecc", ".in");
+        Path encoded = Files.createTempFile("ecc", ".enc");
+        Path decoded = Files.createTempFile("ecc", ".dec");
+        try {
+            Files.write(input, message);
+            ECCFile.encodeFile(c, input, encoded);
+
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            try (ECCOutputStream out = new ECCOutputStream(expected, c)) {
+                out.write(message);
+            }
+            assertArrayEquals(expected.toByteArray(), Files.readAllBytes(encoded));
+
+            ECCFile.decodeFile(c, encoded, decoded, true);
+            assertArrayEquals(message, Arrays.copyOf(Files.readAllBytes(decoded), message.length));
+        } finally {
+            Files.delete(input);
+            Files.delete(encoded);
+            Files.delete(decoded);
+        }
+    }
+
+    /**
+     * Tests that a code restored from its table file encodes and decodes as the code it was saved from,
+     * and that a damaged file is rejected, with damage to the syndrome table only found when it is verified
+     */
+    @Test
+    void testTableFile() throws IOException, InvalidParameterException {
+        ReedMullerCode[] codes = {new ReedMullerCode(5, 2), new ReedMullerCode(6, 2), new ReedMullerCode(5, 1)};
+        Path file = Files.createTempFile("ecc", ".tables");
+
+        try {
+            for (ReedMullerCode c : codes) {
+                c.saveTables(file);
+                ReedMullerCode loaded = ReedMullerCode.loadTables(file);
+                assertEquals(c.getDimension(), loaded.getDimension());
+                assertEquals(c.getGenMatrix(), loaded.getGenMatrix());
+
+                int len = c.getDimension() * 20;
+                BitSet p = randomVector(len);
+                BitSet codetext = c.encode(p, len);
+                assertEquals(codetext, loaded.encode(p, len));
+                assertEquals(codetext, loaded.withPlotkinEncoding(true).encode(p, len));
+
+                for (int i = 0; i < 20 * c.getLength(); i += c.getLength()) {
+                    codetext.flip(i + (i * 7) % c.getLength());
+                    codetext.flip(i + (i * 3 + 5) % c.getLength());
+                }
+                assertEquals(c.decodeAlways(codetext, 20 * c.getLength()), loaded.decodeAlways(codetext, 20 * c.getLength()));
+            }
+
+            //The last code has no syndrome table, so its last byte is in the parity check matrix
+            byte[] bytes = Files.readAllBytes(file);
+            bytes[bytes.length - 1] ^= 1;
+            Files.write(file, bytes);
+            assertThrows(IOException.class, () -> ReedMullerCode.loadTables(file));
+
+            //The syndrome table itself is only checked on request
+            codes[0].saveTables(file);
+            bytes = Files.readAllBytes(file);
+            bytes[bytes.length - 1] ^= 1;
+            Files.write(file, bytes);
+            assertNotNull(ReedMullerCode.loadTables(file));
+            assertThrows(IOException.class, () -> ReedMullerCode.loadTables(file, true));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that the factory writes the table file of a code even when the code is already cached,
+     * loads it once the code is no longer cached, and reports a file it cannot write
+     */
+    @Test
+    void testFactoryTableFile() throws IOException {
+        ECCFactory eccFactory = new ECCFactory();
+        IECC code = eccFactory.makeReedMullerCode(5, 2);
+        Path dir = Files.createTempDirectory("ecc");
+        Path file = dir.resolve("rm-5-2.tables");
+        int size = ECCFactory.getCacheSize();
+
+        try {
+            IECC fromFile = eccFactory.makeReedMullerCode(5, 2, file);
+            assertNotSame(code, fromFile);
+            assertTrue(Files.exists(file));
+            assertSame(fromFile, eccFactory.makeReedMullerCode(5, 2, file));
+
+            ECCFactory.setCacheSize(0);
+            IECC loaded = eccFactory.makeReedMullerCode(5, 2, file);
+            assertNotSame(fromFile, loaded);
+            BitSet p = randomVector(code.getDimension() * 5);
+            assertEquals(code.encode(p, code.getDimension() * 5), loaded.encode(p, code.getDimension() * 5));
+
+            assertThrows(IOException.class, () -> eccFactory.makeReedMullerCode(5, 2, dir.resolve("missing").resolve("rm.tables")));
+        } finally {
+            ECCFactory.setCacheSize(size);
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * Tests copying, extracting and depositing unaligned ranges of bits against BitSet
+     */
+    @Test
+    void testBitBuffer() {
+        Random random = new Random(22);
+
+        for (int trial = 0; trial < 500; trial++) {
+            BitSet source = randomVector(600, trial);
+            BitSet target = randomVector(600, trial + 1000);
+            int sourcePos = random.nextInt(300);
+            int targetPos = random.nextInt(300);
+            int len = random.nextInt(300);
+
+            long[] copied = Arrays.copyOf(target.toLongArray(), BitMatrix.words(600));
+            BitBuffer.copy(Arrays.copyOf(source.toLongArray(), BitMatrix.words(600)), sourcePos, copied, targetPos, len);
+            for (int i = 0; i < len; i++) target.set(targetPos + i, source.get(sourcePos + i));
+            assertEquals(target, BitSet.valueOf(copied));
+
+            int count = random.nextInt(65);
+            long bits = random.nextLong();
+            BitBuffer.deposit(copied, targetPos, count, bits);
+            assertEquals(bits & BitMatrix.mask(count), BitBuffer.extract(copied, targetPos, count));
+            assertEquals(target.get(targetPos + count, 600), BitSet.valueOf(copied).get(targetPos + count, 600));
+            assertEquals(target.get(0, targetPos), BitSet.valueOf(copied).get(0, targetPos));
+        }
+    }
+
+    /**
+     * Tests the packed API at unaligned offsets, leaving the surrounding bits alone
+     */
+    @Test
+    void testPackedOffsets() throws UncorrectableErrorException {
+        IPackedECC[] codes = {(IPackedECC) f.makeHammingCode(4), (IPackedECC) f.makeReedMullerCode(5, 2)};
+
+        for (IPackedECC c : codes) {
+            int len = c.getDimension() * 5 + 3;
+            BitSet p = randomVector(len);
+            BitSet expected = c.encode(p, len);
+
+            long[] plaintext = new long[4 + BitMatrix.words(len + 37)];
+            for (int i = p.nextSetBit(0); i >= 0; i = p.nextSetBit(i + 1)) plaintext[(i + 37) >>> 6] |= 1L << (i + 37);
+            plaintext[BitMatrix.words(len + 37)] = -1L;
+
+            long[] codetext = new long[BitMatrix.words(encodedLength(c, len) + 13) + 1];
+            Arrays.fill(codetext, -1L);
+            assertEquals(encodedLength(c, len), c.encode(plaintext, 37, len, codetext, 13));
+
+            BitSet written = BitSet.valueOf(codetext);
+            assertEquals(expected, written.get(13, 13 + encodedLength(c, len)));
+            int end = 13 + encodedLength(c, len);
+            assertEquals(13, written.get(0, 13).cardinality());
+            assertEquals(codetext.length * 64 - end, written.get(end, codetext.length * 64).cardinality());
+
+            long[] decoded = new long[BitMatrix.words(len + 5) + 1];
+            int bits = c.decodeIfUnique(codetext, 13, encodedLength(c, len), decoded, 5);
+            assertEquals(encodedLength(c, len) / c.getLength() * c.getDimension(), bits);
+            assertEquals(p, BitSet.valueOf(decoded).get(5, 5 + len));
+        }
+    }
+
+    /**
+     * Tests encoding and decoding between direct byte buffers at unaligned offsets, over several windows
+     */
+    @Test
+    void testByteBuffers() throws UncorrectableErrorException {
+        IPackedECC[] codes = {(IPackedECC) f.makeHammingCode(3), (IPackedECC) f.makeReedMullerCode(6, 2)};
+
+        for (IPackedECC c : codes) {
+            int len = c.getDimension() * 20000 + 5;
+            int enclen = encodedLength(c, len);
+            BitSet p = randomVector(len);
+            BitSet expected = c.encode(p, len);
+
+            ByteBuffer plaintext = ByteBuffer.allocateDirect((len + 3 + 7) / 8);
+            BitSet shifted = new BitSet();
+            for (int i = p.nextSetBit(0); i >= 0; i = p.nextSetBit(i + 1)) shifted.set(i + 3);
+            plaintext.put(shifted.toByteArray());
+
+            ByteBuffer codetext = ByteBuffer.allocateDirect((enclen + 11 + 7) / 8 + 1);
+            codetext.put(0, (byte) 0x07);
+            assertEquals(enclen, c.encode(plaintext, 3, len, codetext, 11));
+
+            BitSet written = BitSet.valueOf(codetext.duplicate().clear());
+            assertEquals(expected, written.get(11, 11 + enclen));
+            assertEquals(0x07, codetext.get(0) & 0x07);
+
+            codetext.put(100, (byte) (codetext.get(100) ^ 0x10));
+            ByteBuffer decoded = ByteBuffer.allocateDirect(len / 8 + c.getDimension());
+            assertEquals((long) enclen / c.getLength() * c.getDimension(), c.decodeIfUnique(codetext, 11, enclen, decoded, 0));
+            assertEquals(p, BitSet.valueOf(decoded.duplicate().clear()).get(0, len));
+        }
+    }
+
+    /**
+     * Tests the 64 x 64 bit transpose used to decode 64 blocks at once
+     */
+    @Test
+    void testTranspose64() {
+        Random random = new Random(64);
+        long[] matrix = new long[64];
+        for (int i = 0; i < 64; i++) matrix[i] = random.nextLong();
+
+        long[] transposed = matrix.clone();
+        BitMatrix.transpose64(transposed);
+        for (int i = 0; i < 64; i++) {
+            for (int j = 0; j < 64; j++) {
+                assertEquals((matrix[i] >>> j) & 1, (transposed[j] >>> i) & 1);
+            }
+        }
+    }
+
+    /**
+     * Tests that the Vector API kernel, when the module is present, gives the same products as the scalar kernel
+     */
+    @Test
+    void testVectorKernel() {
+        Random random = new Random(17);
+        ArrayList<BitSet> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) rows.add(randomVector(1000, i));
+        BitMatrix matrix = new BitMatrix(rows, 1000);
+        BitMatrix narrow = new BitMatrix(rows, 60);
+
+        long[] vector = new long[BitMatrix.words(1000)];
+        for (int w = 0; w < vector.length; w++) vector[w] = random.nextLong();
+        long[][] expected = {matrix.leftMultiply(vector), matrix.rightMultiply(vector), narrow.rightMultiply(vector)};
+
+        try {
+            if (BitMatrix.useVectorKernel(true)) {
+                assertArrayEquals(expected[0], matrix.leftMultiply(vector));
+                assertArrayEquals(expected[1], matrix.rightMultiply(vector));
+                assertArrayEquals(expected[2], narrow.rightMultiply(vector));
+            } else {
+                assertTrue(BitMatrix.getKernel() instanceof ScalarKernel);
+            }
+        } finally {
+            BitMatrix.useVectorKernel(false);
+        }
+    }
+
+    /**
+     * Tests that generated encoders give the same codetext as the matrix encoders,
+     * and are only used where a codeword fits in a word
+     */
+    @Test
+    void testGeneratedEncoder() throws InvalidParameterException {
+        ECC[] codes = {new HammingCode(2), new HammingCode(4), new HammingCode(6), new ReedMullerCode(1, 0),
+                new ReedMullerCode(4, 1), new ReedMullerCode(4, 2), new ReedMullerCode(6, 3)};
+
+        for (ECC c : codes) {
+            int len = c.getDimension() * 300 + c.getDimension() / 2;
+            BitSet p = randomVector(len);
+            BitSet expected = c.encode(p, len);
+
+            ECC generated = c.withGeneratedEncoder(true);
+            assertTrue(generated.isGeneratedEncoder());
+            assertFalse(c.isGeneratedEncoder());
+            assertEquals(expected, generated.encode(p, len));
+        }
+
+        ECC wide = new ReedMullerCode(7, 1);
+        assertFalse(wide.withGeneratedEncoder(true).isGeneratedEncoder());
+    }
+
+    /**
+     * Tests that one code decodes correctly on many threads at once, and that its state cannot be changed from outside
+     */
+    @Test
+    void testSharedCode() throws Exception {
+        ECC c = (ECC) f.makeReedMullerCode(5, 2);
+        int len = c.getDimension() * 200;
+        BitSet p = randomVector(len);
+        BitSet clean = c.encode(p, len);
+        BitSet codetext = (BitSet) clean.clone();
+        for (int i = 0; i < 200 * c.getLength(); i += c.getLength()) codetext.flip(i + (i / c.getLength()) % c.getLength());
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            ArrayList<Future<BitSet>> results = new ArrayList<>();
+            for (int t = 0; t < 32; t++) {
+                results.add(pool.submit(() -> c.decodeIfUnique(codetext, 200 * c.getLength())));
+            }
+            for (Future<BitSet> result : results) assertEquals(p, result.get());
+        } finally {
+            pool.shutdown();
+        }
+
+        c.getGenMatrix().get(0).flip(0);
+        c.getParCheckMatrix().get(0).flip(0);
+        assertEquals(clean, c.encode(p, len));
+        assertEquals(p, c.decodeAlways(codetext, 200 * c.getLength()));
+
+        long[] syndrome = new long[BitMatrix.words(c.getLength() - c.getDimension())];
+        syndrome[0] = 1;
+        assertThrows(ReadOnlyBufferException.class, () -> c.getSynTable().remove(syndrome));
+        //A copy with its own executor leaves the shared code as it was, even once the executor is shut down
+        ExecutorService closed = Executors.newSingleThreadExecutor();
+        closed.shutdown();
+        assertThrows(RejectedExecutionException.class, () -> c.withExecutor(closed).withParallelThreshold(1).encode(p, len));
+        assertNull(c.getExecutor());
+        assertEquals(clean, c.withParallelThreshold(1).encode(p, len));
+
+        int coveredWeight = c.getSynTable().getCoveredWeight();
+        assertThrows(ReadOnlyBufferException.class, () -> c.getSynTable().setCoveredWeight(99));
+        assertEquals(coveredWeight, c.getSynTable().getCoveredWeight());
+    }
+
+    /**
+     * Tests that metrics count clean, corrected, slow path and rejected blocks, and time each call once
+     */
+    @Test
+    void testMetrics() throws InvalidParameterException {
+        ECC[] codes = {new HammingCode(4), new ReedMullerCode(5, 2), new ReedMullerCode(5, 2, 0)};
+
+        for (ECC code : codes) {
+            CodeMetrics metrics = new CodeMetrics();
+            ECC c = code.withMetrics(metrics);
+
+            //Enough blocks for both the bit-sliced groups and the blocks after them
+            int blocks = 150;
+            BitSet codetext = c.encode(randomVector(blocks * c.getDimension()), blocks * c.getDimension());
+            for (int b = 0; b < blocks; b += 3) codetext.flip(b * c.getLength() + b % c.getLength());
+
+            c.decodeAlways(codetext, blocks * c.getLength());
+            assertEquals(100, metrics.getCleanBlocks());
+            assertEquals(50, metrics.getCorrectedBlocks());
+            assertEquals(c.getSynTable() == null || c.getSynTable().getCoveredWeight() > 0 ? 0 : 50, metrics.getSlowPathBlocks());
+            assertEquals(1, Arrays.stream(metrics.getDecodeLatencies()).sum());
+            assertEquals(1, Arrays.stream(metrics.getEncodeLatencies()).sum());
+
+            //Four errors in the first block are too many for a unique closest codeword
+            if (c.getDistance() > 3) {
+                codetext.flip(1);
+                codetext.flip(2);
+                codetext.flip(3);
+                assertThrows(UncorrectableErrorException.class, () -> c.decodeIfUnique(codetext, blocks * c.getLength()));
+                assertEquals(1, metrics.getRejectedCalls());
+            }
+
+            metrics.reset();
+            code.decodeAlways(codetext, blocks * c.getLength());
+            assertEquals(0, metrics.getCleanBlocks() + metrics.getCorrectedBlocks());
+        }
+    }
+
+    /**
+     * Tests that large calls are recorded as Flight Recorder events
+     */
+    @Test
+    void testCodingEvents() throws Exception {
+        ECC c = (ECC) f.makeHammingCode(4);
+        int len = (int) CodingEvent.EVENT_BITS;
+        long[] plaintext = new long[BitMatrix.words(len)];
+        long[] codetext = new long[BitMatrix.words(len / c.getDimension() * c.getLength() + c.getLength())];
+        Path file = Files.createTempFile("ecc", ".jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable(CodingEvent.class);
+            recording.start();
+            c.encode(plaintext, 0, len, codetext, 0);
+            c.encode(plaintext, 0, len - 1, codetext, 0);
+            c.encode(plaintext, 0, 100, codetext, 0);
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertEquals(1, events.size());
+            assertEquals("encode", events.get(0).getString("operation"));
+            assertEquals(c.getLength(), events.get(0).getInt("length"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that the factory shares one instance of each code, even when several threads ask for it at once
+     */
+    @Test
+    void testFactoryCache() throws Exception {
+        ECCFactory eccFactory = new ECCFactory();
+        assertSame(eccFactory.makeHammingCode(4), new ECCFactory().makeHammingCode(4));
+        assertSame(eccFactory.makeReedMullerCode(4, 1), eccFactory.makeReedMullerCode(4, 1, ECC.DEFAULT_TABLE_BUDGET));
+        assertNotSame(eccFactory.makeReedMullerCode(4, 1), eccFactory.makeReedMullerCode(4, 1, 0));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ArrayList<Future<IECC>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) results.add(executor.submit(() -> eccFactory.makeReedMullerCode(6, 3, 1 << 20)));
+        for (Future<IECC> result : results) assertSame(results.get(0).get(), result.get());
+        executor.shutdown();
+
+        int size = ECCFactory.getCacheSize();
+        try {
+            ECCFactory.setCacheSize(1);
+            IECC code = eccFactory.makeHammingCode(3);
+            eccFactory.makeHammingCode(5);
+            assertNotSame(code, eccFactory.makeHammingCode(3));
+        } finally {
+            ECCFactory.setCacheSize(size);
+        }
+    }
 
     /**
      * Tests that decode if unique throws UncorrectableErrorException if
@@ -272,6 +927,81 @@ class ECCPublicTests {
         assertTrue(exceptionCount > 0);
     }
 
+    /**
+     * Tests that Hamming codes encode each block independently and correct an error in every block
+     */
+    @Test
+    void testHammingPerBlock() throws UncorrectableErrorException {
+        for (int r = 2; r <= 7; r++) {
+            IECC c = f.makeHammingCode(r);
+            testEncDecErrorsPerBlock(c, 1);
+
+            BitSet p = randomVector(c.getDimension() * 3);
+            BitSet ciph = c.encode(p, c.getDimension() * 3);
+            BitSet second = c.encode(p.get(c.getDimension(), c.getDimension() * 2), c.getDimension());
+            assertEquals(second, ciph.get(c.getLength(), c.getLength() * 2));
+
+            //Decoding corrects a copy rather than the codetext itself
+            ciph.flip(c.getLength() + 1);
+            BitSet received = (BitSet) ciph.clone();
+            assertEquals(p, c.decodeAlways(ciph, c.getLength() * 3));
+            assertEquals(received, ciph);
+        }
+    }
+
+    /**
+     * Tests that Reed-Muller codes encode each block as its product with the generator matrix,
+     * whether by the Plotkin construction or the parity part, and can also give plain codewords
+     */
+    @Test
+    void testPlotkinEncoding() throws InvalidParameterException {
+        ECCFactory eccFactory = new ECCFactory();
+        ReedMullerCode reedMullerCode = (ReedMullerCode) eccFactory.makeReedMullerCode(7, 3, 0);
+        Random random = new Random(8);
+        int dim = reedMullerCode.getDimension();
+        int len = reedMullerCode.getLength();
+
+        BitSet plaintext = new BitSet();
+        for (int i = 0; i < dim * 4; i++) plaintext.set(i, random.nextBoolean());
+
+        //Each block should match the product with the generator matrix
+        BitSet codetext = reedMullerCode.encode(plaintext, dim * 4);
+        for (int block = 0; block < 4; block++) {
+            BitSet expected = reedMullerCode.matrixMult(plaintext.get(block * dim, (block + 1) * dim), reedMullerCode.getGenMatrix());
+            assertEquals(expected, codetext.get(block * len, (block + 1) * len));
+        }
+
+        //Both block encoders give the same codetext, including for codes shorter than a word
+        ReedMullerCode code = new ReedMullerCode(7, 3, 0);
+        assertEquals(codetext, code.withPlotkinEncoding(true).encode(plaintext, dim * 4));
+        assertEquals(codetext, code.withPlotkinEncoding(false).encode(plaintext, dim * 4));
+        ReedMullerCode shortCode = new ReedMullerCode(4, 2, 0);
+        assertEquals(shortCode.withPlotkinEncoding(false).encode(plaintext, dim * 4),
+                shortCode.withPlotkinEncoding(true).encode(plaintext, dim * 4));
+
+        //The constant monomial alone evaluates to one at every point
+        BitSet constant = new BitSet();
+        constant.set(0);
+        BitSet ones = new BitSet();
+        ones.set(0, len);
+        assertEquals(ones, reedMullerCode.encode(constant, dim, false));
+
+        //The first variable alone is one at the odd points
+        BitSet variable = new BitSet();
+        variable.set(1);
+        BitSet odd = new BitSet();
+        for (int x = 1; x < len; x += 2) odd.set(x);
+        assertEquals(odd, reedMullerCode.encode(variable, dim, false));
+
+        //Plain codewords are encoded a block at a time, with the last block padded with zeros
+        int plainLen = dim * 3 + 5;
+        BitSet plain = reedMullerCode.encode(plaintext, plainLen, false);
+        for (int block = 0; block < 4; block++) {
+            BitSet message = plaintext.get(block * dim, Math.min((block + 1) * dim, plainLen));
+            assertEquals(reedMullerCode.encode(message, dim, false), plain.get(block * len, (block + 1) * len));
+        }
+    }
+
     /**
      * Tests that decode if unique throws UncorrectableErrorException if
      * the syndrome is not in the hashmap for 4 errors with a code able
@@ -311,12 +1041,15 @@ class ECCPublicTests {
     }
 
     /**
-     * Tests that something is returned for decode always even if missing from the syndrome table.
+     * Tests that decode always still returns the closest codeword when the syndrome is missing from the table.
      */
     @Test
     void testDecAlwaysMissingSyndrome() {
         ECCFactory eccFactory = new ECCFactory();
-        ReedMullerCode reedMullerCode = (ReedMullerCode) eccFactory.makeReedMullerCode(3, 1);
+        ReedMullerCode reedMullerCode = (ReedMullerCode) eccFactory.makeReedMullerCode(4, 2);
+        //A budget of zero leaves only the zero syndrome in the table
+        ReedMullerCode budgetCode = (ReedMullerCode) eccFactory.makeReedMullerCode(4, 2, 0);
+        int synLen = reedMullerCode.getLength() - reedMullerCode.getDimension();
 
         //Generate an encoding with the first bit set.
         BitSet encoded = new BitSet(reedMullerCode.getLength());
@@ -325,34 +1058,24 @@ class ECCPublicTests {
         //Generates syndrome for encoding
         BitSet syndrome = reedMullerCode.matrixMult(encoded, reedMullerCode.getParCheckMatrix());
 
-        //Gets decoding of code text
-        BitSet originalDecoding = reedMullerCode.decodeAlways(encoded, reedMullerCode.getLength());
-
-        //Removes the syndrome from the syndrome table
-        reedMullerCode.getSynTable().remove(syndrome);
-
-        //Gets the "best guess" using the shortest distance syndrome to generate a second decoding
-        BitSet decoded = reedMullerCode.decodeAlways(encoded, reedMullerCode.getLength());
-
-        //Finds shortest distance syndrome
-        int shortest = 100;
-        int temp;
-        for (BitSet syn : reedMullerCode.getSynTable().keySet()) {
-            if ((temp = reedMullerCode.distance(syn, syndrome, reedMullerCode.getLength())) < shortest) {
-                shortest = temp;
-            }
-        }
+        //Tests that the syndrome is only in the table of the full code
+        assertTrue(reedMullerCode.getSynTable().isComplete());
+        assertNotEquals(SyndromeTable.NONE, reedMullerCode.getSynTable().find(BitMatrix.toWords(syndrome, synLen)));
+        assertEquals(SyndromeTable.NONE, budgetCode.getSynTable().find(BitMatrix.toWords(syndrome, synLen)));
 
+        //Gets decodings with and without the syndrome in the table
+        BitSet originalDecoding = reedMullerCode.decodeAlways(encoded, reedMullerCode.getLength());
+        BitSet decoded = budgetCode.decodeAlways(encoded, budgetCode.getLength());
 
-        //Tests that both decodings were successful
+        //Tests that both decodings were successful and agree
         assertNotNull(decoded);
         assertNotNull(originalDecoding);
+        assertEquals(originalDecoding, decoded);
 
-        //Tests that the decodings were not the same
-        assertNotEquals(decoded, originalDecoding);
-
-        //Tests that the decoding used corresponds to the closest syndrome
-        assertEquals(shortest, reedMullerCode.distance(syndrome, reedMullerCode.getClosest(syndrome), reedMullerCode.getLength()));
+        //Tests that the decoding is to the closest codeword, a single bit away from the encoding
+        BitSet codeword = budgetCode.encode(decoded, budgetCode.getDimension());
+        codeword.xor(encoded);
+        assertEquals(1, codeword.cardinality());
     }
 
 
@@ -0,0 +1,121 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Moves ranges of bits in and out of packed vectors, up to 64 bits at a time with shifts and masks.
+ * Bit j of a vector is stored in word j / 64 at position j % 64, as in BitMatrix, and the bytes of
+ * a vector are its words in little-endian order, so that byte i holds bits 8i to 8i + 7.
+ */
+public final class BitBuffer {
+
+    private BitBuffer() {
+
+    }
+
+    /**
+     * Gets up to 64 bits from a packed vector
+     * @param words - packed vector
+     * @param pos - position of the first bit
+     * @param count - number of bits, from 0 to 64
+     * @return - the bits, from the lowest bit up
+     */
+    public static long extract(long[] words, int pos, int count) {
+        if (count == 0) return 0;
+
+        int word = pos >>> 6;
+        int shift = pos & 63;
+
+        long bits = words[word] >>> shift;
+        if (shift + count > 64) bits |= words[word + 1] << (64 - shift);
+        return bits & BitMatrix.mask(count);
+    }
+
+    /**
+     * Sets up to 64 bits of a packed vector, leaving the bits around them unchanged
+     * @param words - packed vector
+     * @param pos - position of the first bit
+     * @param count - number of bits, from 0 to 64
+     * @param bits - the bits, from the lowest bit up, ignoring any above count
+     */
+    public static void deposit(long[] words, int pos, int count, long bits) {
+        if (count == 0) return;
+
+        int word = pos >>> 6;
+        int shift = pos & 63;
+        long mask = BitMatrix.mask(count);
+        bits &= mask;
+
+        words[word] = (words[word] & ~(mask << shift)) | (bits << shift);
+        if (shift + count > 64) {
+            words[word + 1] = (words[word + 1] & ~(mask >>> (64 - shift))) | (bits >>> (64 - shift));
+        }
+    }
+
+    /**
+     * Copies a range of bits between packed vectors, a word at a time
+     * @param source - packed vector to copy from
+     * @param sourcePos - index of first bit to copy
+     * @param target - packed vector to copy to
+     * @param targetPos - index to copy the first bit to
+     * @param len - number of bits to copy
+     */
+    public static void copy(long[] source, int sourcePos, long[] target, int targetPos, int len) {
+        //Fills the first target word, after which every deposit is aligned to a whole word
+        int count = Math.min(-targetPos & 63, len);
+        deposit(target, targetPos, count, extract(source, sourcePos, count));
+        sourcePos += count;
+        targetPos += count;
+        len -= count;
+
+        if ((sourcePos & 63) == 0) {
+            System.arraycopy(source, sourcePos >>> 6, target, targetPos >>> 6, len >>> 6);
+            sourcePos += len & -64;
+            targetPos += len & -64;
+            len &= 63;
+        }
+
+        for (; len >= 64; sourcePos += 64, targetPos += 64, len -= 64) {
+            target[targetPos >>> 6] = extract(source, sourcePos, 64);
+        }
+        deposit(target, targetPos, len, extract(source, sourcePos, len));
+    }
+
+    /**
+     * Reads little-endian bytes into packed words, whatever the byte order of the buffer.
+     * Any bits of the last word past the bytes are cleared.
+     * @param buffer - buffer to read, left with the same position and byte order
+     * @param start - index of first byte
+     * @param count - number of bytes
+     * @param words - packed words to read into
+     */
+    public static void readBytes(ByteBuffer buffer, int start, int count, long[] words) {
+        int whole = count >>> 3;
+        ByteBuffer bytes = buffer.duplicate().position(start).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asLongBuffer().get(words, 0, whole);
+
+        if ((count & 7) != 0) {
+            long word = 0;
+            for (int b = 0; b < (count & 7); b++) {
+                word |= (buffer.get(start + (whole << 3) + b) & 0xFFL) << (b << 3);
+            }
+            words[whole] = word;
+        }
+    }
+
+    /**
+     * Writes packed words out as little-endian bytes, whatever the byte order of the buffer
+     * @param words - packed words to write
+     * @param buffer - buffer to write to, left with the same position and byte order
+     * @param start - index of first byte
+     * @param count - number of bytes
+     */
+    public static void writeBytes(long[] words, ByteBuffer buffer, int start, int count) {
+        int whole = count >>> 3;
+        ByteBuffer bytes = buffer.duplicate().position(start).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asLongBuffer().put(words, 0, whole);
+
+        for (int b = 0; b < (count & 7); b++) {
+            buffer.put(start + (whole << 3) + b, (byte) (words[whole] >>> (b << 3)));
+        }
+    }
+}
@@ -0,0 +1,231 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * A binary matrix whose rows are packed into 64-bit words, so that products over GF(2)
+ * can be computed a word at a time rather than bit by bit.
+ * Bit j of a row is stored in word j / 64 at position j % 64, matching the layout of BitSet.toLongArray().
+ */
+public class BitMatrix {
+    private final int rows;
+    private final int cols;
+    private final int words;
+    private final long[] data;
+
+    //Name of the system property used to pick the kernel at startup, either scalar or vector
+    public static final String KERNEL_PROPERTY = "ecc.kernel";
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static volatile GF2Kernel kernel = new ScalarKernel();
+
+    static {
+        if ("vector".equals(System.getProperty(KERNEL_PROPERTY))) useVectorKernel(true);
+    }
+
+    /**
+     * Packs a matrix of BitSet rows
+     * @param matrix - rows of the matrix
+     * @param cols - number of columns in each row
+     */
+    public BitMatrix(ArrayList<BitSet> matrix, int cols) {
+        this(matrix.size(), cols);
+
+        for (int row = 0; row < rows; row++) {
+            long[] packed = toWords(matrix.get(row), cols);
+            System.arraycopy(packed, 0, data, row * words, words);
+        }
+    }
+
+    /**
+     * Creates a zero matrix
+     * @param rows - number of rows
+     * @param cols - number of columns
+     */
+    private BitMatrix(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.words = words(cols);
+        this.data = new long[rows * words];
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * @return - number of words used to store each row
+     */
+    public int getWords() {
+        return words;
+    }
+
+    /**
+     * Gets a single bit of the matrix
+     * @param row - row of bit
+     * @param col - column of bit
+     * @return - true if the bit is set
+     */
+    public boolean get(int row, int col) {
+        return (data[row * words + (col >>> 6)] & (1L << col)) != 0;
+    }
+
+    /**
+     * XORs a row of the matrix into a packed vector
+     * @param row - row to add
+     * @param target - packed vector with one bit per column, updated in place
+     */
+    public void xorRow(int row, long[] target) {
+        for (int w = 0, offset = row * words; w < words; w++) {
+            target[w] ^= data[offset + w];
+        }
+    }
+
+    /**
+     * Creates the transpose of this matrix, so that column products can be taken as row products
+     * @return - transposed matrix
+     */
+    public BitMatrix transpose() {
+        BitMatrix t = new BitMatrix(cols, rows);
+
+        for (int row = 0; row < rows; row++) {
+            for (int w = 0; w < words; w++) {
+                long bits = data[row * words + w];
+
+                //Visits only the set bits of the row
+                while (bits != 0) {
+                    int col = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    t.data[col * t.words + (row >>> 6)] |= 1L << row;
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        return t;
+    }
+
+    /**
+     * Multiplies a vector by this matrix (vector * matrix) by XORing together the rows
+     * selected by the set bits of the vector
+     * @param vector - packed vector with (at least) one bit per row
+     * @param result - packed result with one bit per column, overwritten
+     */
+    public void leftMultiply(long[] vector, long[] result) {
+        kernel.leftMultiply(data, rows, words, vector, result);
+    }
+
+    /**
+     * Multiplies a vector by this matrix (vector * matrix)
+     * @param vector - packed vector with (at least) one bit per row
+     * @return - packed result with one bit per column
+     */
+    public long[] leftMultiply(long[] vector) {
+        long[] result = new long[words];
+        leftMultiply(vector, result);
+        return result;
+    }
+
+    /**
+     * Multiplies this matrix by a column vector (matrix * vector), computing each
+     * result bit as the parity of the set bits shared by a row and the vector
+     * @param vector - packed vector with (at least) one bit per column
+     * @param result - packed result with one bit per row, overwritten
+     */
+    public void rightMultiply(long[] vector, long[] result) {
+        kernel.rightMultiply(data, rows, words, vector, result);
+    }
+
+    /**
+     * Multiplies this matrix by a column vector (matrix * vector)
+     * @param vector - packed vector with (at least) one bit per column
+     * @return - packed result with one bit per row
+     */
+    public long[] rightMultiply(long[] vector) {
+        long[] result = new long[words(rows)];
+        rightMultiply(vector, result);
+        return result;
+    }
+
+    /**
+     * Transposes a 64 x 64 bit matrix in place, so that bit j of word i swaps with bit i of word j.
+     * Each of the six rounds swaps the off-diagonal quarters of every block of half the previous size.
+     * @param matrix - 64 words, one per row
+     */
+    public static void transpose64(long[] matrix) {
+        long mask = 0x00000000FFFFFFFFL;
+
+        for (int j = 32; j != 0; j >>>= 1, mask ^= mask << j) {
+            for (int k = 0; k < 64; k = ((k | j) + 1) & ~j) {
+                long t = ((matrix[k] >>> j) ^ matrix[k | j]) & mask;
+                matrix[k | j] ^= t;
+                matrix[k] ^= t << j;
+            }
+        }
+    }
+
+    /**
+     * Switches the products of every matrix between the scalar kernel and the Vector API kernel.
+     * The Vector API kernel is only available when the JVM was started with --add-modules jdk.incubator.vector,
+     * and otherwise the scalar kernel is kept.
+     * @param vector - true to use the Vector API kernel, false for the scalar kernel
+     * @return - true if the requested kernel is now in use
+     */
+    public static boolean useVectorKernel(boolean vector) {
+        if (!vector) {
+            kernel = new ScalarKernel();
+            return true;
+        }
+
+        //The kernel class links against the module, so it must not be loaded without it
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) return false;
+
+        try {
+            kernel = (GF2Kernel) Class.forName("VectorKernel").getDeclaredConstructor().newInstance();
+            return true;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return - the kernel currently used for products
+     */
+    public static GF2Kernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     * Calculates the number of 64-bit words needed to store a number of bits
+     * @param bits - number of bits
+     * @return - number of words
+     */
+    public static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    /**
+     * Gets a mask of the lowest bits of a word
+     * @param bits - number of bits to keep (0 to 64)
+     * @return - mask
+     */
+    public static long mask(int bits) {
+        return bits >= 64 ? -1L : (1L << bits) - 1;
+    }
+
+    /**
+     * Packs the first len bits of a BitSet into words, ignoring any bits beyond len
+     * @param bitSet - bits to pack
+     * @param len - number of bits
+     * @return - packed words
+     */
+    public static long[] toWords(BitSet bitSet, int len) {
+        long[] packed = new long[words(len)];
+        long[] source = bitSet.toLongArray();
+        System.arraycopy(source, 0, packed, 0, Math.min(source.length, packed.length));
+
+        if (packed.length > 0) packed[packed.length - 1] &= mask(len - ((packed.length - 1) << 6));
+        return packed;
+    }
+}
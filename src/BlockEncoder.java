@@ -0,0 +1,13 @@
+/**
+ * Encodes a single block of a code whose blocks and codewords each fit in one 64-bit word.
+ * Implementations are generated for each code by EncoderGenerator.
+ */
+public interface BlockEncoder {
+
+    /**
+     * Encodes a block
+     * @param message - block of plaintext, from the lowest bit up, with every bit above the dimension clear
+     * @return - encoded block, from the lowest bit up
+     */
+    long encode(long message);
+}
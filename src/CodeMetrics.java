@@ -0,0 +1,140 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what a code does while decoding, and how long its encode and decode calls take.
+ * Counters are striped LongAdders, so that threads decoding with the same code do not contend, and
+ * blocks are counted once per range or group of 64 rather than one at a time.
+ * <p>
+ * Latencies are kept in histograms with power of two buckets: bucket i counts the calls that took
+ * from 2^(i - 1) up to 2^i nanoseconds, and bucket 0 those that took no measurable time.
+ * Calls through the BitSet, long[] and ByteBuffer methods are each counted once.
+ */
+public class CodeMetrics {
+    private static final int BUCKETS = 64;
+
+    private final LongAdder cleanBlocks = new LongAdder();
+    private final LongAdder correctedBlocks = new LongAdder();
+    private final LongAdder slowPathBlocks = new LongAdder();
+    private final LongAdder rejectedCalls = new LongAdder();
+    private final LongAdder[] encodeLatencies = newHistogram();
+    private final LongAdder[] decodeLatencies = newHistogram();
+
+    private static LongAdder[] newHistogram() {
+        LongAdder[] histogram = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) histogram[i] = new LongAdder();
+        return histogram;
+    }
+
+    /**
+     * Counts decoded blocks
+     * @param clean - number of blocks that were already codewords
+     * @param corrected - number of blocks that had errors and were corrected
+     */
+    public void addBlocks(long clean, long corrected) {
+        if (clean != 0) cleanBlocks.add(clean);
+        if (corrected != 0) correctedBlocks.add(corrected);
+    }
+
+    /**
+     * Counts a block whose syndrome was not in the syndrome table, so that its error had to be searched for
+     */
+    public void addSlowPath() {
+        slowPathBlocks.increment();
+    }
+
+    /**
+     * Counts a decodeIfUnique call that found a block without a unique closest codeword
+     */
+    public void addRejected() {
+        rejectedCalls.increment();
+    }
+
+    /**
+     * Records the time taken by an encode call
+     * @param nanos - time taken in nanoseconds
+     */
+    public void recordEncode(long nanos) {
+        encodeLatencies[bucket(nanos)].increment();
+    }
+
+    /**
+     * Records the time taken by a decode call
+     * @param nanos - time taken in nanoseconds
+     */
+    public void recordDecode(long nanos) {
+        decodeLatencies[bucket(nanos)].increment();
+    }
+
+    private static int bucket(long nanos) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos)));
+    }
+
+    /**
+     * @return - number of decoded blocks that were already codewords
+     */
+    public long getCleanBlocks() {
+        return cleanBlocks.sum();
+    }
+
+    /**
+     * @return - number of decoded blocks that had errors and were corrected
+     */
+    public long getCorrectedBlocks() {
+        return correctedBlocks.sum();
+    }
+
+    /**
+     * @return - number of blocks whose errors were searched for, having no syndrome table entry.
+     * These are also counted as corrected if a codeword was found.
+     */
+    public long getSlowPathBlocks() {
+        return slowPathBlocks.sum();
+    }
+
+    /**
+     * @return - number of decodeIfUnique calls that threw UncorrectableErrorException
+     */
+    public long getRejectedCalls() {
+        return rejectedCalls.sum();
+    }
+
+    /**
+     * @return - number of encode calls taking each power of two of nanoseconds
+     */
+    public long[] getEncodeLatencies() {
+        return sums(encodeLatencies);
+    }
+
+    /**
+     * @return - number of decode calls taking each power of two of nanoseconds
+     */
+    public long[] getDecodeLatencies() {
+        return sums(decodeLatencies);
+    }
+
+    private static long[] sums(LongAdder[] histogram) {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) counts[i] = histogram[i].sum();
+        return counts;
+    }
+
+    /**
+     * Sets every counter back to zero. Counts made while resetting may be lost.
+     */
+    public void reset() {
+        cleanBlocks.reset();
+        correctedBlocks.reset();
+        slowPathBlocks.reset();
+        rejectedCalls.reset();
+        for (int i = 0; i < BUCKETS; i++) {
+            encodeLatencies[i].reset();
+            decodeLatencies[i].reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Clean: " + getCleanBlocks() + " Corrected: " + getCorrectedBlocks()
+                + " Slow path: " + getSlowPathBlocks() + " Rejected: " + getRejectedCalls();
+    }
+}
@@ -0,0 +1,71 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for each encode or decode call on a large message.
+ * Events are only created for messages of at least EVENT_BITS bits, and only recorded while a recording
+ * has ecc.Coding enabled, so smaller calls and runs without a recording pay nothing.
+ */
+@Name("ecc.Coding")
+@Label("ECC Coding")
+@Category("Error Correcting Codes")
+@Description("Encoding or decoding of a large message")
+@StackTrace(false)
+public class CodingEvent extends Event {
+    //Smallest message that gets an event
+    public static final long EVENT_BITS = 1 << 20;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Code Length")
+    int length;
+
+    @Label("Code Dimension")
+    int dimension;
+
+    @Label("Message Size")
+    @DataAmount(DataAmount.BITS)
+    long bits;
+
+    @Label("Success")
+    boolean success;
+
+    /**
+     * Starts timing a call, if it is large enough and the event is enabled
+     * @param code - code the call is on
+     * @param operation - name of the method called
+     * @param bits - number of bits passed in
+     * @return - the started event, or null if there is no event for the call
+     */
+    public static CodingEvent start(ECC code, String operation, long bits) {
+        if (bits < EVENT_BITS) return null;
+
+        CodingEvent event = new CodingEvent();
+        if (!event.isEnabled()) return null;
+
+        event.operation = operation;
+        event.length = code.getLength();
+        event.dimension = code.getDimension();
+        event.bits = bits;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Records a call started by start
+     * @param event - event returned by start, or null
+     * @param success - false if the call could not decode a block
+     */
+    public static void finish(CodingEvent event, boolean success) {
+        if (event == null) return;
+
+        event.success = success;
+        event.commit();
+    }
+}
@@ -1,16 +1,56 @@
-import com.sun.org.apache.xpath.internal.operations.Bool;
-
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.util.*;
-
-public abstract class ECC implements IECC {
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A linear block code, encoding blocks of k bits (the dimension) as codewords of n bits (the length).
+ * <p>
+ * A code is fixed once its constructor returns: its matrices and syndrome table are only set while it is built,
+ * the matrices are handed out as copies and the syndrome table is read-only. So one code may be shared by any number
+ * of threads, for instance through ECCFactory, and encoded and decoded concurrently without locks.
+ * As with any object built without final fields, a code must be passed to other threads through a final field,
+ * a volatile field or a concurrent collection (as the factory's cache does) for them to see it fully built.
+ * The executor, parallel threshold, choice of block encoder and metrics are fixed too. Each with method returns
+ * a copy of the code with one of them changed, sharing the matrices, syndrome table and per-thread buffers, so that
+ * a caller can run a shared code its own way (for instance on its own executor) without affecting other callers.
+ * <p>
+ * The working buffers of the block kernels are held per thread and per code, and reused by every call on that
+ * thread, so encoding and decoding do not allocate beyond their results. On JDK 17 every thread is a platform thread,
+ * so each buffer lives as long as its thread. Under virtual threads a buffer would be allocated for every virtual thread
+ * that uses a code, which is as much as allocating for each call, since JDK 17 has no per-carrier alternative.
+ */
+public abstract class ECC implements IPackedECC, Cloneable {
     private int length;
     private int dimension;
     private int distance;
     private ArrayList<BitSet> genMatrix;
     private ArrayList<BitSet> parCheckMatrix;
-    private HashMap<BitSet, BitSet> synTable = new HashMap<>();
+    private BitMatrix parityPart;
+    private BitMatrix parityRows;
+    private BitMatrix parityChecks;
+    private int[][] checkPositions;
+    private SyndromeTable synTable;
+    private long tableBudget = DEFAULT_TABLE_BUDGET;
+    public static final long DEFAULT_TABLE_BUDGET = 64L << 20;
+    private static final int PARALLEL_TABLE_SIZE = 1 << 15;
+    private ExecutorService executor;
+    private BlockEncoder generatedEncoder;
+    private CodeMetrics metrics;
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(getDimension(), getLength()));
+    private final ThreadLocal<Window> windows = ThreadLocal.withInitial(() -> new Window(windowBlocks() * Math.max(getLength(), getDimension())));
+    private static final int WINDOW_BITS = 1 << 18;
+    private int parallelThreshold = PARALLEL_BLOCKS;
+    public static final int PARALLEL_BLOCKS = 1 << 12;
     private static final int NONE = -1;
+    //Results of correctBlock
+    protected static final int UNCORRECTABLE = -1;
+    protected static final int CLEAN = 0;
+    protected static final int CORRECTED = 1;
 
     @Override
     public int getLength() {
@@ -30,124 +70,451 @@ public abstract class ECC implements IECC {
         this.dimension = dim;
     }
 
+    /**
+     * @return - copy of the generator matrix, in standard form
+     */
     public ArrayList<BitSet> getGenMatrix() {
-        return genMatrix;
+        return copy(genMatrix);
     }
 
+    /**
+     * Sets the generator matrix, which must be in standard form [I | P]
+     * @param genMatrix - rows of generator matrix
+     */
     protected void setGenMatrix(ArrayList<BitSet> genMatrix) {
         this.genMatrix = genMatrix;
+
+        //Keeps only P, as the identity part just copies the block
+        ArrayList<BitSet> parityPart = new ArrayList<>();
+        for (BitSet row : genMatrix) {
+            parityPart.add(row.get(getDimension(), getLength()));
+        }
+        this.parityPart = new BitMatrix(parityPart, getLength() - getDimension());
     }
 
+    /**
+     * @return - copy of the parity check matrix, with one row for each position of a block
+     */
     public ArrayList<BitSet> getParCheckMatrix() {
-        return parCheckMatrix;
+        return copy(parCheckMatrix);
+    }
+
+    /**
+     * Copies the rows of a matrix, so that the matrices of a code cannot be changed from outside it
+     * @param matrix - rows of matrix, or null
+     * @return - copied rows, or null
+     */
+    private static ArrayList<BitSet> copy(ArrayList<BitSet> matrix) {
+        if (matrix == null) return null;
+
+        ArrayList<BitSet> rows = new ArrayList<>(matrix.size());
+        for (BitSet row : matrix) {
+            rows.add((BitSet) row.clone());
+        }
+        return rows;
     }
 
     protected void setParCheckMatrix(ArrayList<BitSet> parCheckMatrix) {
         this.parCheckMatrix = parCheckMatrix;
+        this.parityRows = new BitMatrix(parCheckMatrix, getLength() - getDimension());
+        //Stores the columns of the parity check matrix as rows so each syndrome bit is a single row product
+        this.parityChecks = parityRows.transpose();
+
+        //Lists the positions checked by each syndrome bit, for computing syndromes bit-sliced
+        this.checkPositions = new int[parityChecks.getRows()][];
+        for (int row = 0; row < parityChecks.getRows(); row++) {
+            int count = 0;
+            for (int col = 0; col < getLength(); col++) {
+                if (parityChecks.get(row, col)) count++;
+            }
+
+            checkPositions[row] = new int[count];
+            for (int col = 0, index = 0; col < getLength(); col++) {
+                if (parityChecks.get(row, col)) checkPositions[row][index++] = col;
+            }
+        }
     }
 
     public int getDistance() {
         return distance;
     }
 
-    public void setDistance(int distance) {
+    protected void setDistance(int distance) {
         this.distance = distance;
     }
 
-    public HashMap<BitSet, BitSet> getSynTable() {
+    public SyndromeTable getSynTable() {
         return synTable;
     }
 
-    public void setSynTable(HashMap<BitSet, BitSet> synTable) {
-        this.synTable = synTable;
+    /**
+     * Sets the syndrome table, keeping a read-only view of it
+     * @param synTable - syndrome table, or null if the code has none
+     */
+    protected void setSynTable(SyndromeTable synTable) {
+        this.synTable = synTable == null ? null : synTable.readOnly();
+    }
+
+    /**
+     * @return - memory budget in bytes for the syndrome table
+     */
+    public long getTableBudget() {
+        return tableBudget;
+    }
+
+    protected void setTableBudget(long tableBudget) {
+        this.tableBudget = tableBudget;
     }
 
     /**
      * Generates the syndrome table for the encoding using the
-     * parity check matrix and the permuted error codes
+     * parity check matrix and the permuted error codes.
+     * If a coset leader for every syndrome fits in the memory budget the table is complete.
+     * Otherwise whole weights of error patterns are added lowest weight first (most probable first)
+     * for as long as the table fits in the memory budget.
      * @return - syndrome table
      */
-    protected HashMap<BitSet, BitSet> genSynTable() {
-        ArrayList<BitSet> parityMatrix = getParCheckMatrix();
-        int maxErrSize = (getDistance() - 1) / 2;
-        HashMap<BitSet, BitSet> synTable = new HashMap<>();
-
-        ArrayList<BitSet> errors = new ArrayList<>();
-        int arr[] = new int[getLength()];
-        for (int i = 0; i < getLength(); i++) arr[i] = i;
-        int n = arr.length;
+    protected SyndromeTable genSynTable() {
+        return genSynTable(true);
+    }
 
-        for (int i = 0; i <= maxErrSize; i++) {
-            getErrorCodes(arr, n , i, errors);
+    /**
+     * Generates the syndrome table, as genSynTable does
+     * @param parallel - true if the syndromes of large tables may be computed in parallel
+     * @return - syndrome table, the same whether or not it was computed in parallel
+     */
+    protected SyndromeTable genSynTable(boolean parallel) {
+        int synBits = getLength() - getDimension();
+        int maxErrSize = (getDistance() - 1) / 2;
+        long entries = 1;
+        double errCount = 1;
+        int maxWeight = 0;
+
+        //Counts the error patterns of each weight until the next weight would exceed the budget
+        for (int weight = 1; weight <= maxErrSize; weight++) {
+            errCount = errCount * (getLength() - weight + 1) / weight;
+            if (entries + errCount > Integer.MAX_VALUE / 2
+                    || SyndromeTable.bytes(synBits, getLength(), entries + (long) errCount) > getTableBudget()) {
+                break;
+            }
+            entries += (long) errCount;
+            maxWeight = weight;
         }
 
-        for (BitSet error : errors) {
-            synTable.put(matrixMult(error, parityMatrix), error);
+        if (SyndromeTable.completeBytes(synBits, getLength()) <= getTableBudget()) {
+            //A coset leader for every syndrome fits, so decoding never needs to search
+            return SyndromeTable.complete(synBits, getLength(), parityRows);
         }
 
+        SyndromeTable synTable = new SyndromeTable(synBits, getLength(), (int) entries);
+        long[] error = new long[BitMatrix.words(getLength())];
+        long[] syndrome = new long[BitMatrix.words(synBits)];
+
+        if (!parallel || entries < PARALLEL_TABLE_SIZE) {
+            for (int weight = 1; weight <= maxWeight; weight++) {
+                addErrors(0, weight, error, syndrome, synTable);
+            }
+        } else {
+            /*Splits the error patterns by weight and by their first set bit, and computes the syndromes of each group
+            on the common pool while earlier groups are merged, in the same order as the serial enumeration.
+            Groups are only computed ahead for as long as their entries fit in the budget left over by the table,
+            and a group too large to fit at all is added directly, so the build stays within the budget.*/
+            long spare = getTableBudget() - SyndromeTable.bytes(synBits, getLength(), entries);
+            int ahead = Runtime.getRuntime().availableProcessors() * 4;
+            ArrayDeque<ErrorPatternTask> pending = new ArrayDeque<>();
+            long pendingBytes = 0;
+
+            for (int weight = 1; weight <= maxWeight; weight++) {
+                for (int lead = 0; lead <= getLength() - weight; lead++) {
+                    ErrorPatternTask task = new ErrorPatternTask(weight, lead);
+
+                    while (!pending.isEmpty() && (pending.size() >= ahead || pendingBytes + task.bytes() > spare)) {
+                        ErrorPatternTask done = pending.poll();
+                        pendingBytes -= done.bytes();
+                        done.mergeInto(synTable);
+                    }
+
+                    if (task.bytes() > spare) {
+                        error[lead >>> 6] ^= 1L << lead;
+                        parityRows.xorRow(lead, syndrome);
+                        addErrors(lead + 1, weight - 1, error, syndrome, synTable);
+                        error[lead >>> 6] ^= 1L << lead;
+                        parityRows.xorRow(lead, syndrome);
+                    } else {
+                        task.submit();
+                        pending.add(task);
+                        pendingBytes += task.bytes();
+                    }
+                }
+            }
+
+            while (!pending.isEmpty()) {
+                pending.poll().mergeInto(synTable);
+            }
+        }
+        synTable.setCoveredWeight(maxWeight);
 
         return synTable;
     }
 
     /**
-     * Multiplies a BitSet by a matrix to get a syndrome
-     * @param bitSet - encoded message/error code
-     * @param matrix - parity check matrix
-     * @return - syndrome entry
+     * Calculates the binomial coefficient n choose k exactly
+     * @param n - n elements
+     * @param k - k elements
+     * @return - binomial coefficient
      */
-    protected BitSet matrixMult(BitSet bitSet, ArrayList<BitSet> matrix) {
-        BitSet result = new BitSet(matrix.size());
-        int total = 0;
+    private static long choose(int n, int k) {
+        long value = 1;
+
+        for (int i = 0; i < k; i++) {
+            value = value * (n - i) / (i + 1);
+        }
+
+        return value;
+    }
+
+    /**
+     * Computes the syndromes of all the error patterns of one weight whose first set bit is at a given position
+     */
+    private class ErrorPatternTask implements Callable<long[]> {
+        private final int weight;
+        private final int lead;
+        private final int synWords = BitMatrix.words(getLength() - getDimension());
+        private final int codeWords = BitMatrix.words(getLength());
+        private Future<long[]> result;
+        private int filled;
+
+        ErrorPatternTask(int weight, int lead) {
+            this.weight = weight;
+            this.lead = lead;
+        }
+
+        /**
+         * @return - number of bytes the entries of the group take until they are merged
+         */
+        long bytes() {
+            return choose(getLength() - lead - 1, weight - 1) * (synWords + codeWords) * Long.BYTES;
+        }
+
+        /**
+         * Starts computing the group on the common fork-join pool
+         */
+        void submit() {
+            result = ForkJoinPool.commonPool().submit(this);
+        }
+
+        /**
+         * @return - syndrome and error pattern of each entry, packed one after the other
+         */
+        @Override
+        public long[] call() {
+            long[] entries = new long[(int) choose(getLength() - lead - 1, weight - 1) * (synWords + codeWords)];
+            long[] error = new long[codeWords];
+            long[] syndrome = new long[synWords];
+
+            error[lead >>> 6] ^= 1L << lead;
+            parityRows.xorRow(lead, syndrome);
+            collect(lead + 1, weight - 1, error, syndrome, entries);
+
+            return entries;
+        }
+
+        private void collect(int start, int remaining, long[] error, long[] syndrome, long[] entries) {
+            if (remaining == 0) {
+                System.arraycopy(syndrome, 0, entries, filled, synWords);
+                System.arraycopy(error, 0, entries, filled + synWords, codeWords);
+                filled += synWords + codeWords;
+                return;
+            }
+
+            for (int pos = start; pos <= getLength() - remaining; pos++) {
+                error[pos >>> 6] ^= 1L << pos;
+                parityRows.xorRow(pos, syndrome);
+
+                collect(pos + 1, remaining - 1, error, syndrome, entries);
 
-        for (int col = 0; col < getLength(); col++) {
-            for (int element = 0; element < matrix.size(); element++) {
-                total += (matrix.get(element).get(col) && bitSet.get(element)) ? 1 : 0;
+                error[pos >>> 6] ^= 1L << pos;
+                parityRows.xorRow(pos, syndrome);
+            }
+        }
+
+        /**
+         * Waits for the group to be computed and adds its entries to a syndrome table
+         * @param synTable - table to add to
+         */
+        void mergeInto(SyndromeTable synTable) {
+            long[] entries;
+            try {
+                entries = result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while building syndrome table", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                if (e.getCause() instanceof Error) throw (Error) e.getCause();
+                throw new IllegalStateException(e.getCause());
             }
 
-            result.set(col, total % 2 != 0);
-            total = 0;
+            long[] syndrome = new long[synWords];
+            long[] error = new long[codeWords];
+            for (int offset = 0; offset < entries.length; offset += synWords + codeWords) {
+                System.arraycopy(entries, offset, syndrome, 0, synWords);
+                System.arraycopy(entries, offset + synWords, error, 0, codeWords);
+                synTable.put(syndrome, error);
+            }
+        }
+    }
+
+    /**
+     * Adds every error pattern with a given number of further set bits to the syndrome table.
+     * The syndrome is kept up to date by XORing in the parity check row of each bit as it is set,
+     * so no pattern needs a full matrix multiplication.
+     * @param start - first position that may be set
+     * @param remaining - number of bits still to set
+     * @param error - error pattern built so far, restored before returning
+     * @param syndrome - syndrome of the error pattern so far, restored before returning
+     * @param synTable - table to add to
+     */
+    private void addErrors(int start, int remaining, long[] error, long[] syndrome, SyndromeTable synTable) {
+        if (remaining == 0) {
+            synTable.put(syndrome, error);
+            return;
         }
 
-        return result;
+        for (int pos = start; pos <= getLength() - remaining; pos++) {
+            error[pos >>> 6] ^= 1L << pos;
+            parityRows.xorRow(pos, syndrome);
+
+            addErrors(pos + 1, remaining - 1, error, syndrome, synTable);
+
+            error[pos >>> 6] ^= 1L << pos;
+            parityRows.xorRow(pos, syndrome);
+        }
     }
 
     /**
-     * BEGIN CITATION
-     * https://www.geeksforgeeks.org/print-all-possible-combinations-of-r-elements-in-a-given-array-of-size-n/
-     * @param arr
-     * @param data
-     * @param start
-     * @param end
-     * @param index
-     * @param r
+     * Searches the error patterns too heavy to be in the syndrome table, lightest first,
+     * for one with the given syndrome and applies it to the block
+     * @param syndrome - packed syndrome of block
+     * @param block - packed block to correct
+     * @param maxWeight - heaviest error pattern to try
+     * @return - true if an error pattern was found and applied
      */
-    private void combinationUtil(int arr[], int data[], int start,
-                                int end, int index, int r, ArrayList<BitSet> errorCodes)
-    {
-        if (index == r) {
-            BitSet error = new BitSet(getLength());
-            for (int j = 0; j < r; j++) {
-                error.set(data[j]);
+    protected boolean searchError(long[] syndrome, long[] block, int maxWeight) {
+        long[] error = new long[BitMatrix.words(getLength())];
+        long[] partial = new long[syndrome.length];
+
+        for (int weight = getSynTable().getCoveredWeight() + 1; weight <= maxWeight; weight++) {
+            if (findError(0, weight, error, partial, syndrome)) {
+                for (int w = 0; w < error.length; w++) block[w] ^= error[w];
+                return true;
             }
-            errorCodes.add(error);
-            return;
+        }
+        return false;
+    }
+
+    /**
+     * Corrects a block to a closest codeword using the syndrome table.
+     * If the syndrome is a key in the syndrome-error map, then an XOR is performed on the block with the corresponding
+     * error code - all zeros if correct. Otherwise the table was cut short by its budget, and the block is corrected
+     * without it.
+     * @param block - packed block to correct in place
+     * @param unique - true if the block may only be corrected to a unique closest codeword within (d - 1) / 2
+     * @return - CLEAN if the block was already a codeword, CORRECTED if it was corrected, or UNCORRECTABLE if it could not be
+     */
+    protected int correctBlock(long[] block, boolean unique) {
+        long[] syndrome = scratch.get().syndrome;
+        syndrome(block, syndrome);
+        int slot = getSynTable().find(syndrome);
+
+        if (slot == SyndromeTable.NONE) {
+            CodeMetrics metrics = this.metrics;
+            if (metrics != null) metrics.addSlowPath();
+            return correctMissing(syndrome, block, unique) ? CORRECTED : UNCORRECTABLE;
+        } else if (unique && getSynTable().leaderWeight(slot) > (getDistance() - 1) / 2) {
+            //The coset leader is too heavy to be the unique closest error
+            return UNCORRECTABLE;
         }
 
-        for (int i = start; i <= end && end - i + 1 >= r - index; i++) {
-            data[index] = arr[i];
-            combinationUtil(arr, data, i+1, end, index+1, r, errorCodes);
+        for (long word : syndrome) {
+            if (word != 0) {
+                getSynTable().xorLeader(slot, block);
+                return CORRECTED;
+            }
         }
+        return CLEAN;
     }
 
-    private void getErrorCodes(int arr[], int n, int r, ArrayList<BitSet> errCodes) {
-        int data[] = new int[r];
+    /**
+     * Corrects a block whose syndrome is not in the table, which can only happen when the table
+     * was cut short by its memory budget. By default only the weight just beyond the table is searched (and no
+     * more than (d - 1) / 2), as each further weight multiplies the search by about n. A block with a heavier
+     * error is rejected if unique, and otherwise left as it was received, so it need not decode to a closest
+     * codeword. Codes with a decoder that does not need the table override this.
+     * @param syndrome - packed syndrome of block
+     * @param block - packed block to correct in place
+     * @param unique - true if the block may only be corrected to a unique closest codeword within (d - 1) / 2
+     * @return - true if the block was corrected, or if unique is false
+     */
+    protected boolean correctMissing(long[] syndrome, long[] block, boolean unique) {
+        int maxWeight = Math.min((getDistance() - 1) / 2, getSynTable().getCoveredWeight() + 1);
+        return searchError(syndrome, block, maxWeight) || !unique;
+    }
+
+    /**
+     * Finds an error pattern with a given number of further set bits whose syndrome matches the target
+     * @param start - first position that may be set
+     * @param remaining - number of bits still to set
+     * @param error - error pattern built so far, left holding the match if one is found
+     * @param partial - syndrome of the error pattern so far
+     * @param target - syndrome to match
+     * @return - true if a matching pattern was found
+     */
+    private boolean findError(int start, int remaining, long[] error, long[] partial, long[] target) {
+        if (remaining == 0) return Arrays.equals(partial, target);
+
+        for (int pos = start; pos <= getLength() - remaining; pos++) {
+            error[pos >>> 6] ^= 1L << pos;
+            parityRows.xorRow(pos, partial);
 
-        combinationUtil(arr, data, 0, n-1, 0, r, errCodes);
+            boolean found = findError(pos + 1, remaining - 1, error, partial, target);
+            parityRows.xorRow(pos, partial);
+            if (found) return true;
+
+            error[pos >>> 6] ^= 1L << pos;
+        }
+        return false;
+    }
+
+    /**
+     * Multiplies a BitSet by a matrix to get a syndrome
+     * @param bitSet - encoded message/error code
+     * @param matrix - parity check matrix
+     * @return - syndrome entry
+     */
+    protected BitSet matrixMult(BitSet bitSet, ArrayList<BitSet> matrix) {
+        BitMatrix packed = new BitMatrix(matrix, getLength());
+        return BitSet.valueOf(packed.leftMultiply(BitMatrix.toWords(bitSet, matrix.size())));
     }
+
     /**
-     * END CITATION
+     * Computes the syndrome of a block using the packed parity check matrix,
+     * taking the parity of each column product with Long.bitCount
+     * @param block - packed block of codetext
+     * @return - packed syndrome of block
      */
+    protected long[] syndrome(long[] block) {
+        return parityChecks.rightMultiply(block);
+    }
 
+    /**
+     * Computes the syndrome of a block into a given buffer
+     * @param block - packed block of codetext
+     * @param syndrome - packed syndrome of block, overwritten
+     */
+    protected void syndrome(long[] block, long[] syndrome) {
+        parityChecks.rightMultiply(block, syndrome);
+    }
 
     /**
      * Calculates the binomial coefficient of two numbers n and k
@@ -180,7 +547,7 @@ public abstract class ECC implements IECC {
      */
     protected ArrayList<BitSet> genParityMatrix() {
         ArrayList<BitSet> parityMatrix = new ArrayList<>();
-        ArrayList<BitSet> matrix = getGenMatrix();
+        ArrayList<BitSet> matrix = genMatrix;
         int length = getLength() - matrix.size();
 
         //Adds parity bits of generator matrix to top of parity check matrix
@@ -213,8 +580,12 @@ public abstract class ECC implements IECC {
      * Then eliminates all 1 bits above and below by adding current row to the other rows.
      * If there is no set bit in the current column at the correct row, columns are swapped until there is.
      * @param genMatrix - matrix to standardise
+     * @return - original index of the column now at each position
      */
-    protected void standardise(ArrayList<BitSet> genMatrix) {
+    protected int[] standardise(ArrayList<BitSet> genMatrix) {
+        int[] columnOrder = new int[getLength()];
+        for (int col = 0; col < getLength(); col++) columnOrder[col] = col;
+
         //Iterates over each row, rearranging the matrix to get the leftmost one in the correct position
         for (int row = 0, col = 0; row < genMatrix.size(); row++, col++) {
             int setRow = NONE;
@@ -226,6 +597,11 @@ public abstract class ECC implements IECC {
                 setRow = getSetRow(genMatrix, row, col);
 
                 if (setRow == NONE) {
+                    if (nextCol < getLength()) {
+                        int temp = columnOrder[col];
+                        columnOrder[col] = columnOrder[nextCol];
+                        columnOrder[nextCol] = temp;
+                    }
                     swapColumns(genMatrix, col, nextCol++);
                 } else if (setRow != row) {
                     Collections.swap(genMatrix, setRow, row);
@@ -234,6 +610,8 @@ public abstract class ECC implements IECC {
 
             clearColumn(genMatrix, row, col);
         }
+
+        return columnOrder;
     }
 
     /**
@@ -272,7 +650,7 @@ public abstract class ECC implements IECC {
      * @param col1 - first column to swap
      * @param col2 - second column to swap
      */
-    public void swapColumns(ArrayList<BitSet> matrix, int col1, int col2) {
+    protected void swapColumns(ArrayList<BitSet> matrix, int col1, int col2) {
         if (col1 >= getLength() || col2 >= getLength()) return;
 
         for (int i = 0; i < matrix.size(); i++) {
@@ -298,120 +676,402 @@ public abstract class ECC implements IECC {
     }
 
     /**
-     * Converts a plaintext message into codetext with parity bits
-     * @param plaintext the binary input
-     * @param len the length of the plaintext
-     * @return codetext
+     * Encodes a single block by multiplying it by the generator matrix.
+     * As the matrix is in standard form [I | P], the block is copied a word at a time
+     * and only the parity bits are computed, by multiplying the block by P.
+     * @param message - packed block of plaintext
+     * @param codeword - packed encoded block, overwritten
      */
-    @Override
-    public BitSet encode(BitSet plaintext, int len) {
-        ArrayList<BitSet> blocks = new ArrayList<>();
-        BitSet codetext = new BitSet();
-        int index = 0;
+    protected void encodeBlock(long[] message, long[] codeword) {
+        long[] parity = scratch.get().parity;
+        int dim = getDimension();
+
+        parityPart.leftMultiply(message, parity);
+
+        for (int w = 0; w < codeword.length; w++) {
+            codeword[w] = w < BitMatrix.words(dim) ? message[w] : 0;
+        }
+        if (dim < codeword.length << 6) codeword[dim >>> 6] &= BitMatrix.mask(dim & 63);
 
-        //Divides plaintext into blocks
-        for (int i = 0; i < len; i += getDimension()) {
-            BitSet block = new BitSet();
+        BitBuffer.copy(parity, 0, codeword, dim, getLength() - dim);
+    }
+
+    /**
+     * Copies the plaintext bits out of a corrected block. By default the code is in standard form,
+     * so the plaintext is the first k bits of the block.
+     * @param block - packed corrected block
+     * @param message - packed block of plaintext, overwritten
+     */
+    protected void stripParity(long[] block, long[] message) {
+        BitBuffer.copy(block, 0, message, 0, getDimension());
+    }
 
-            for (int j = 0; j < getDimension(); j++) {
-                block.set(j, plaintext.get(index++));
+    /**
+     * Encodes a range of blocks from one packed vector into another, padding the last block with zeros
+     * @param plaintext - packed plaintext
+     * @param offset - position of the first plaintext bit
+     * @param len - number of plaintext bits
+     * @param codetext - packed codetext to write the encoded blocks to
+     * @param codeOffset - position to write the first encoded block to
+     * @param from - first block to encode
+     * @param to - block after the last block to encode
+     */
+    protected void encodeRange(long[] plaintext, int offset, int len, long[] codetext, int codeOffset, int from, int to) {
+        Scratch buffers = scratch.get();
+        long[] message = buffers.message;
+        long[] codeword = buffers.block;
+        BlockEncoder generated = generatedEncoder;
+
+        if (generated != null) {
+            for (int i = from; i < to; i++) {
+                int bits = Math.min(getDimension(), len - i * getDimension());
+                long block = BitBuffer.extract(plaintext, offset + i * getDimension(), bits);
+                BitBuffer.deposit(codetext, codeOffset + i * getLength(), getLength(), generated.encode(block));
             }
+            return;
+        }
 
-            blocks.add((BitSet) block.clone());
+        for (int i = from; i < to; i++) {
+            int bits = Math.min(getDimension(), len - i * getDimension());
+            if (bits < getDimension()) Arrays.fill(message, 0);
+
+            BitBuffer.copy(plaintext, offset + i * getDimension(), message, 0, bits);
+            encodeBlock(message, codeword);
+            BitBuffer.copy(codeword, 0, codetext, codeOffset + i * getLength(), getLength());
         }
+    }
 
-        //Multiplies each blocks by the generator matrix to get encoded block
-        index = 0;
-        for (int i = 0; i < blocks.size(); i++) {
-            BitSet bs = matrixMult(blocks.get(i), getGenMatrix());
-            for (int j = 0; j < getLength(); j++) {
-                codetext.set(index++, bs.get(j));
+    /**
+     * Decodes a range of blocks from one packed vector into another, correcting a copy of each block
+     * and padding the last block with zeros
+     * @param codetext - packed codetext, left unchanged
+     * @param offset - position of the first codetext bit
+     * @param len - number of codetext bits
+     * @param plaintext - packed plaintext to write the decoded blocks to
+     * @param plainOffset - position to write the first decoded block to
+     * @param from - first block to decode
+     * @param to - block after the last block to decode
+     * @param unique - true if each block may only be corrected to a unique closest codeword
+     * @return - false if a block could not be corrected, leaving the rest of the range undecoded
+     */
+    protected boolean decodeRange(long[] codetext, int offset, int len, long[] plaintext, int plainOffset,
+                                  int from, int to, boolean unique) {
+        Scratch buffers = scratch.get();
+        long[] block = buffers.block;
+        long[] message = buffers.message;
+
+        int i = from;
+        //Whole groups of 64 blocks are checked together, bit-sliced
+        for (; i + 64 <= to && (i + 64) * getLength() <= len; i += 64) {
+            if (!decodeGroup(codetext, offset + i * getLength(), plaintext, plainOffset + i * getDimension(), unique)) {
+                return false;
             }
         }
 
-        return codetext;
+        CodeMetrics metrics = this.metrics;
+        int first = i;
+        long clean = 0;
+        for (; i < to; i++) {
+            int bits = Math.min(getLength(), len - i * getLength());
+            if (bits < getLength()) Arrays.fill(block, 0);
+
+            BitBuffer.copy(codetext, offset + i * getLength(), block, 0, bits);
+            int result = correctBlock(block, unique);
+            if (result == UNCORRECTABLE) return false;
+            if (result == CLEAN) clean++;
+
+            stripParity(block, message);
+            BitBuffer.copy(message, 0, plaintext, plainOffset + i * getDimension(), getDimension());
+        }
+
+        if (metrics != null) metrics.addBlocks(clean, to - first - clean);
+        return true;
     }
 
     /**
-     * Decodes an encoded message even if a unique syndrome entry does not exist for it in the table
-     * by returning the value associated with the closest syndrome
-     * @param codetext the binary input
-     * @param len the length of the codetext
-     * @return plaintext
+     * Decodes 64 consecutive blocks. The blocks are transposed so that each word holds one position of all 64,
+     * which gives all 64 syndromes with one XOR per set bit of the parity check matrix. Only the blocks with
+     * a nonzero syndrome then need correcting, one at a time.
+     * @param codetext - packed codetext, left unchanged
+     * @param offset - position of the first block
+     * @param plaintext - packed plaintext to write the decoded blocks to
+     * @param plainOffset - position to write the first decoded block to
+     * @param unique - true if each block may only be corrected to a unique closest codeword
+     * @return - false if a block could not be corrected
      */
-    @Override
-    public BitSet decodeAlways(BitSet codetext, int len) {
-        ArrayList<BitSet> blocks = new ArrayList<>();
-        BitSet plaintext = new BitSet();
-        int index = 0;
-
-        //Chunks up the encoded messages into blocks
-        for (int i = 0; i < len; i += getLength()) {
-            BitSet block = new BitSet();
+    protected boolean decodeGroup(long[] codetext, int offset, long[] plaintext, int plainOffset, boolean unique) {
+        Scratch buffers = scratch.get();
+        long[] slices = buffers.slices;
+        long[] group = buffers.group;
+
+        BitBuffer.copy(codetext, offset, group, 0, getLength() << 6);
+        sliceBlocks(group, slices, buffers.matrix);
+
+        //Bit b of each syndrome bit's slice belongs to block b, so the blocks with errors are those set in any slice
+        long errors = 0;
+        for (int[] positions : checkPositions) {
+            long syndrome = 0;
+            for (int pos : positions) syndrome ^= slices[pos];
+            errors |= syndrome;
+        }
 
-            for (int j = 0; j < getLength(); j++) {
-                block.set(j, codetext.get(index++));
-            }
+        for (int b = 0; b < 64; b++) {
+            BitBuffer.copy(group, b * getLength(), buffers.block, 0, getLength());
+            if (((errors >>> b) & 1) != 0 && correctBlock(buffers.block, unique) == UNCORRECTABLE) return false;
 
-            blocks.add((BitSet) block.clone());
+            stripParity(buffers.block, buffers.message);
+            BitBuffer.copy(buffers.message, 0, plaintext, plainOffset + b * getDimension(), getDimension());
         }
 
-        index = 0;
-        /*If the syndrome is a key in the syndrome-error map, then an XOR is performed on the block with the corresponding
-        error code - all zeros if correct. Otherwise the closest syndrome is found and that error code is used.*/
-        for (int i = 0; i < blocks.size(); i++) {
-            BitSet syndrome = matrixMult(blocks.get(i), getParCheckMatrix());
+        CodeMetrics metrics = this.metrics;
+        if (metrics != null) metrics.addBlocks(64 - Long.bitCount(errors), Long.bitCount(errors));
+        return true;
+    }
 
-            if (getSynTable().containsKey(syndrome)) {
-                blocks.get(i).xor(getSynTable().get(syndrome));
-            } else {
-                blocks.get(i).xor(getClosest(syndrome));
-            }
+    /**
+     * Transposes 64 consecutive blocks, so that bit b of slice j is bit j of block b
+     * @param group - 64 consecutive blocks, packed from the start of the array
+     * @param slices - one word for each position of a block, overwritten
+     * @param matrix - 64 words of working space
+     */
+    protected void sliceBlocks(long[] group, long[] slices, long[] matrix) {
+        for (int col = 0; col < getLength(); col += 64) {
+            int count = Math.min(64, getLength() - col);
 
-            for (int j = 0; j < getDimension(); j++) {
-                plaintext.set(index++, blocks.get(i).get(j));
+            //Takes 64 bits of each block at a time and transposes them
+            for (int b = 0; b < 64; b++) {
+                matrix[b] = BitBuffer.extract(group, b * getLength() + col, count);
             }
+
+            BitMatrix.transpose64(matrix);
+            System.arraycopy(matrix, 0, slices, col, count);
+        }
+    }
+
+    /**
+     * Buffers for the block kernels, one set per thread so that no block allocates
+     */
+    private static final class Scratch {
+        final long[] message;
+        final long[] block;
+        final long[] syndrome;
+        final long[] parity;
+        final long[] slices;
+        final long[] group;
+        final long[] matrix = new long[64];
+
+        Scratch(int dimension, int length) {
+            message = new long[BitMatrix.words(dimension)];
+            block = new long[BitMatrix.words(length)];
+            syndrome = new long[BitMatrix.words(length - dimension)];
+            parity = new long[BitMatrix.words(length - dimension)];
+            slices = new long[length];
+            group = new long[length];
         }
-        return plaintext;
     }
 
     /**
-     * Finds the closest syndrome in the table to the new syndrome (if multiple are shortest then takes the first)
-     * @param newSyndrome - syndrome to find closest match
-     * @return
+     * Checks whether a message should be split into ranges. Ranges are whole multiples of 64 blocks, so if the
+     * output starts on a word boundary then so does each range's output, and no two ranges write to the same word.
+     * @param blocks - number of blocks
+     * @param outOffset - position of the first output bit
+     * @return - true if the message is at least the parallel threshold and its output is word aligned
      */
-    public BitSet getClosest(BitSet newSyndrome) {
-        BitSet shortest = null;
-        int len = getLength() - getDimension();
+    private boolean parallel(long blocks, long outOffset) {
+        return blocks >= parallelThreshold && (outOffset & 63) == 0;
+    }
 
-        for (BitSet syndrome: getSynTable().keySet()) {
-            if (shortest == null) shortest = syndrome;
+    /**
+     * Runs a kernel over every block of a message, split into ranges of whole multiples of 64 blocks
+     * which are run on the executor
+     * @param blocks - number of blocks
+     * @param kernel - kernel to run on each range
+     * @return - false if the kernel failed on any range
+     */
+    private boolean forEachRange(int blocks, RangeKernel kernel) {
+        return forEachRange(blocks, 64, kernel);
+    }
 
-            if (distance(syndrome, newSyndrome, len) < distance(shortest, newSyndrome, len)) {
-                shortest = syndrome;
-            }
+    /**
+     * Runs a kernel over units of work split into ranges which are run on the executor
+     * @param units - number of units
+     * @param align - number of units each range (but the last) must be a multiple of
+     * @param kernel - kernel to run on each range
+     * @return - false if the kernel failed on any range
+     */
+    private boolean forEachRange(int units, int align, RangeKernel kernel) {
+        ExecutorService pool = executor != null ? executor : ForkJoinPool.commonPool();
+        //Several ranges per processor so that uneven ranges (such as slow decodes) balance out
+        int ranges = Runtime.getRuntime().availableProcessors() * 4;
+        int rangeUnits = ((Math.max(1, units / ranges) + align - 1) / align) * align;
+        ArrayList<Callable<Boolean>> tasks = new ArrayList<>();
+
+        for (int from = 0; from < units; from += rangeUnits) {
+            int start = from;
+            int end = Math.min(units, from + rangeUnits);
+            tasks.add(() -> kernel.process(start, end));
+        }
 
+        boolean success = true;
+        try {
+            for (Future<Boolean> result : pool.invokeAll(tasks)) {
+                if (!result.get()) success = false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while processing blocks", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
         }
-        return shortest;
+
+        return success;
     }
 
     /**
-     * Calculates the distance between two bitsets
-      * @param b1 - bitset 1
-     * @param b2 - bitset 2
-     * @param len - length of bitsets
-     * @return - distance
+     * Work done on a range of blocks
      */
-    public int distance(BitSet b1, BitSet b2, int len) {
-        int dist = 0;
+    private interface RangeKernel {
+        boolean process(int from, int to);
+    }
 
-        for (int i = 0; i < len; i++) {
-            if (!(b1.get(i) && b2.get(i))) {
-                dist++;
-            }
+    /**
+     * Copies this code for a with method, sharing everything that is fixed once the code is built
+     * @return - copy of code
+     */
+    protected ECC copy() {
+        try {
+            return (ECC) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
         }
+    }
+
+    /**
+     * Copies this code to encode blocks either with encodeBlock or with an encoder generated for it by EncoderGenerator,
+     * which is only possible when both blocks and codewords fit in 64 bits.
+     * Both give the same codetext.
+     * @param generated - true to use a generated encoder, false for encodeBlock
+     * @return - copy of code, using a generated encoder if one was asked for and is possible
+     */
+    public ECC withGeneratedEncoder(boolean generated) {
+        ECC code = copy();
+        code.generatedEncoder = generated ? EncoderGenerator.generate(this) : null;
+        return code;
+    }
+
+    /**
+     * @return - true if blocks are encoded by a generated encoder
+     */
+    public boolean isGeneratedEncoder() {
+        return generatedEncoder != null;
+    }
+
+    /**
+     * @return - metrics the code is counting into, or null if it is not counting
+     */
+    public CodeMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Copies this code to count decoded blocks and time calls, or not. While metrics is null (the default)
+     * decoding only checks a field once per range of blocks, and no clock is read.
+     * Several codes may count into the same metrics.
+     * @param metrics - metrics to count into, or null to not count
+     * @return - copy of code
+     */
+    public ECC withMetrics(CodeMetrics metrics) {
+        ECC code = copy();
+        code.metrics = metrics;
+        return code;
+    }
+
+    /**
+     * Ends a call to a public encode or decode method, recording its time and event
+     * @param metrics - metrics read when the call started, or null
+     * @param start - System.nanoTime() when the call started, if metrics is not null
+     * @param event - event started for the call, or null
+     * @param decode - true for a decode call
+     * @param success - false if a decodeIfUnique call found a block it could not decode
+     */
+    private static void finishCall(CodeMetrics metrics, long start, CodingEvent event, boolean decode, boolean success) {
+        CodingEvent.finish(event, success);
+        if (metrics == null) return;
+
+        if (decode) metrics.recordDecode(System.nanoTime() - start);
+        else metrics.recordEncode(System.nanoTime() - start);
+        if (!success) metrics.addRejected();
+    }
+
+    /**
+     * @return - executor used for large messages, or null for the common fork-join pool
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Copies this code to process the blocks of large messages in parallel on a given executor.
+     * Only the copy uses the executor, so it may be shut down once the copy is no longer used.
+     * @param executor - executor to use, or null for the common fork-join pool
+     * @return - copy of code
+     */
+    public ECC withExecutor(ExecutorService executor) {
+        ECC code = copy();
+        code.executor = executor;
+        return code;
+    }
+
+    /**
+     * @return - number of blocks at which messages are processed in parallel
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Copies this code to process messages in parallel from a given number of blocks
+     * @param parallelThreshold - smallest number of blocks to split, or Integer.MAX_VALUE to always stay serial
+     * @return - copy of code
+     */
+    public ECC withParallelThreshold(int parallelThreshold) {
+        ECC code = copy();
+        code.parallelThreshold = parallelThreshold;
+        return code;
+    }
+
+    /**
+     * Converts a plaintext message into codetext with parity bits
+     * @param plaintext the binary input
+     * @param len the length of the plaintext
+     * @return codetext
+     */
+    @Override
+    public BitSet encode(BitSet plaintext, int len) {
+        int blocks = (len + getDimension() - 1) / getDimension();
+        long[] codetext = new long[BitMatrix.words(blocks * getLength())];
+
+        encode(BitMatrix.toWords(plaintext, len), 0, len, codetext, 0);
+        return BitSet.valueOf(codetext);
+    }
 
-        return dist;
+    /**
+     * Decodes an encoded message by correcting each block to a closest codeword,
+     * using the minimum weight coset leader of its syndrome. If the syndrome table was cut short by its budget,
+     * blocks beyond it are corrected by correctMissing, which bounds its work rather than promising a closest codeword.
+     * @param codetext the binary input
+     * @param len the length of the codetext
+     * @return plaintext
+     */
+    @Override
+    public BitSet decodeAlways(BitSet codetext, int len) {
+        int blocks = (len + getLength() - 1) / getLength();
+        long[] plaintext = new long[BitMatrix.words(blocks * getDimension())];
+
+        decodeAlways(BitMatrix.toWords(codetext, len), 0, len, plaintext, 0);
+        return BitSet.valueOf(plaintext);
     }
 
     /**
@@ -423,47 +1083,224 @@ public abstract class ECC implements IECC {
      */
     @Override
     public BitSet decodeIfUnique(BitSet codetext, int len) throws UncorrectableErrorException {
-        //If the code is a hamming code then decode always is called as hamming is a perfect code
-        if (this instanceof HammingCode) {
-            return this.decodeAlways(codetext, len);
+        int blocks = (len + getLength() - 1) / getLength();
+        long[] plaintext = new long[BitMatrix.words(blocks * getDimension())];
+
+        decodeIfUnique(BitMatrix.toWords(codetext, len), 0, len, plaintext, 0);
+        return BitSet.valueOf(plaintext);
+    }
+
+    @Override
+    public int encode(long[] plaintext, int offset, int len, long[] codetext, int codeOffset) {
+        CodeMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        CodingEvent event = CodingEvent.start(this, "encode", len);
+        int blocks = (len + getDimension() - 1) / getDimension();
+
+        //Encodes each block straight into the codetext
+        if (parallel(blocks, codeOffset)) {
+            forEachRange(blocks, (from, to) -> {
+                encodeRange(plaintext, offset, len, codetext, codeOffset, from, to);
+                return true;
+            });
         } else {
-            ArrayList<BitSet> blocks = new ArrayList<>();
-            BitSet plaintext = new BitSet();
-            int index = 0;
+            encodeRange(plaintext, offset, len, codetext, codeOffset, 0, blocks);
+        }
 
-            //Chunks up the encoded messages into blocks
-            for (int i = 0; i < len; i += getLength()) {
-                BitSet block = new BitSet();
+        finishCall(metrics, start, event, false, true);
+        return blocks * getLength();
+    }
 
-                for (int j = 0; j < getLength(); j++) {
-                    block.set(j, codetext.get(index++));
-                }
+    @Override
+    public int decodeAlways(long[] codetext, int offset, int len, long[] plaintext, int plainOffset) {
+        CodeMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        CodingEvent event = CodingEvent.start(this, "decodeAlways", len);
+        int blocks = (len + getLength() - 1) / getLength();
+
+        //Corrects each block to a closest codeword
+        if (parallel(blocks, plainOffset)) {
+            forEachRange(blocks, (from, to) -> decodeRange(codetext, offset, len, plaintext, plainOffset, from, to, false));
+        } else {
+            decodeRange(codetext, offset, len, plaintext, plainOffset, 0, blocks, false);
+        }
 
-                blocks.add((BitSet) block.clone());
-            }
+        finishCall(metrics, start, event, true, true);
+        return blocks * getDimension();
+    }
 
-            index = 0;
-            //Generates the syndrome for each block by multiplying it by the parity check matrix
-            for (int i = 0; i < blocks.size(); i++) {
-                BitSet syndrome = matrixMult(blocks.get(i), getParCheckMatrix());
-
-                /*
-                If the syndrome is a key in the syndrome-error map, then an XOR is performed on the block with the corresponding
-                error code - all zeros if correct. Otherwise an UncorrectableErrorException is thrown.
-                 */
-                if (getSynTable().containsKey(syndrome)) {
-                    blocks.get(i).xor(getSynTable().get(syndrome));
-                } else {
-                    throw new UncorrectableErrorException();
-                }
+    @Override
+    public int decodeIfUnique(long[] codetext, int offset, int len, long[] plaintext, int plainOffset)
+            throws UncorrectableErrorException {
+        CodeMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        CodingEvent event = CodingEvent.start(this, "decodeIfUnique", len);
+        int blocks = (len + getLength() - 1) / getLength();
+        boolean success;
+
+        //Corrects each block to its unique closest codeword, or throws an UncorrectableErrorException if there is none
+        if (parallel(blocks, plainOffset)) {
+            success = forEachRange(blocks, (from, to) -> decodeRange(codetext, offset, len, plaintext, plainOffset, from, to, true));
+        } else {
+            success = decodeRange(codetext, offset, len, plaintext, plainOffset, 0, blocks, true);
+        }
 
-                //Assign (corrected) plaintext bits of block to plaintext bitset
-                for (int j = 0; j < getDimension(); j++) {
-                    plaintext.set(index++, blocks.get(i).get(j));
-                }
-            }
+        finishCall(metrics, start, event, true, success);
+        if (!success) throw new UncorrectableErrorException();
+        return blocks * getDimension();
+    }
+
+    @Override
+    public long encode(ByteBuffer plaintext, long offset, long len, ByteBuffer codetext, long codeOffset) {
+        CodeMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        CodingEvent event = CodingEvent.start(this, "encode", len);
+        long blocks = (len + getDimension() - 1) / getDimension();
+        int windows = (int) ((blocks + windowBlocks() - 1) / windowBlocks());
+
+        //Encodes a window of blocks at a time straight between the buffers
+        if (parallel(blocks, codeOffset)) {
+            forEachRange(windows, 1, (from, to) -> {
+                encodeWindows(plaintext, offset, len, codetext, codeOffset, from, to);
+                return true;
+            });
+        } else {
+            encodeWindows(plaintext, offset, len, codetext, codeOffset, 0, windows);
+        }
+
+        finishCall(metrics, start, event, false, true);
+        return blocks * getLength();
+    }
+
+    @Override
+    public long decodeAlways(ByteBuffer codetext, long offset, long len, ByteBuffer plaintext, long plainOffset) {
+        CodeMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        CodingEvent event = CodingEvent.start(this, "decodeAlways", len);
+        long blocks = (len + getLength() - 1) / getLength();
+        int windows = (int) ((blocks + windowBlocks() - 1) / windowBlocks());
+
+        if (parallel(blocks, plainOffset)) {
+            forEachRange(windows, 1, (from, to) -> decodeWindows(codetext, offset, len, plaintext, plainOffset, from, to, false));
+        } else {
+            decodeWindows(codetext, offset, len, plaintext, plainOffset, 0, windows, false);
+        }
+
+        finishCall(metrics, start, event, true, true);
+        return blocks * getDimension();
+    }
+
+    @Override
+    public long decodeIfUnique(ByteBuffer codetext, long offset, long len, ByteBuffer plaintext, long plainOffset)
+            throws UncorrectableErrorException {
+        CodeMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        CodingEvent event = CodingEvent.start(this, "decodeIfUnique", len);
+        long blocks = (len + getLength() - 1) / getLength();
+        int windows = (int) ((blocks + windowBlocks() - 1) / windowBlocks());
+        boolean success;
+
+        if (parallel(blocks, plainOffset)) {
+            success = forEachRange(windows, 1, (from, to) -> decodeWindows(codetext, offset, len, plaintext, plainOffset, from, to, true));
+        } else {
+            success = decodeWindows(codetext, offset, len, plaintext, plainOffset, 0, windows, true);
+        }
+
+        finishCall(metrics, start, event, true, success);
+        if (!success) throw new UncorrectableErrorException();
+        return blocks * getDimension();
+    }
+
+    /**
+     * Encodes windows of blocks between byte buffers. Each window is read into the per-thread window buffers,
+     * starting at the byte holding its first bit, encoded with the block kernel and written back. The bytes
+     * under the output window are read first so that the bits either side of it are kept.
+     * @param plaintext - plaintext buffer
+     * @param offset - position of the first plaintext bit
+     * @param len - number of plaintext bits
+     * @param codetext - codetext buffer
+     * @param codeOffset - position to write the first codetext bit to
+     * @param from - first window to encode
+     * @param to - window after the last window to encode
+     */
+    private void encodeWindows(ByteBuffer plaintext, long offset, long len, ByteBuffer codetext, long codeOffset, int from, int to) {
+        Window window = windows.get();
+        long blocks = (len + getDimension() - 1) / getDimension();
+
+        for (int i = from; i < to; i++) {
+            long first = (long) i * windowBlocks();
+            int count = (int) Math.min(windowBlocks(), blocks - first);
+
+            long inPos = offset + first * getDimension();
+            int inBits = (int) Math.min((long) count * getDimension(), len - first * getDimension());
+            int inShift = (int) (inPos & 7);
+            BitBuffer.readBytes(plaintext, (int) (inPos >>> 3), (inShift + inBits + 7) >>> 3, window.input);
+
+            long outPos = codeOffset + first * getLength();
+            int outShift = (int) (outPos & 7);
+            int outBytes = (outShift + count * getLength() + 7) >>> 3;
+            BitBuffer.readBytes(codetext, (int) (outPos >>> 3), outBytes, window.output);
+
+            encodeRange(window.input, inShift, inBits, window.output, outShift, 0, count);
+            BitBuffer.writeBytes(window.output, codetext, (int) (outPos >>> 3), outBytes);
+        }
+    }
+
+    /**
+     * Decodes windows of blocks between byte buffers, as encodeWindows encodes them
+     * @param codetext - codetext buffer, left unchanged
+     * @param offset - position of the first codetext bit
+     * @param len - number of codetext bits
+     * @param plaintext - plaintext buffer
+     * @param plainOffset - position to write the first plaintext bit to
+     * @param from - first window to decode
+     * @param to - window after the last window to decode
+     * @param unique - true if each block may only be corrected to a unique closest codeword
+     * @return - false if a block could not be corrected
+     */
+    private boolean decodeWindows(ByteBuffer codetext, long offset, long len, ByteBuffer plaintext, long plainOffset,
+                                  int from, int to, boolean unique) {
+        Window window = windows.get();
+        long blocks = (len + getLength() - 1) / getLength();
+
+        for (int i = from; i < to; i++) {
+            long first = (long) i * windowBlocks();
+            int count = (int) Math.min(windowBlocks(), blocks - first);
+
+            long inPos = offset + first * getLength();
+            int inBits = (int) Math.min((long) count * getLength(), len - first * getLength());
+            int inShift = (int) (inPos & 7);
+            BitBuffer.readBytes(codetext, (int) (inPos >>> 3), (inShift + inBits + 7) >>> 3, window.input);
+
+            long outPos = plainOffset + first * getDimension();
+            int outShift = (int) (outPos & 7);
+            int outBytes = (outShift + count * getDimension() + 7) >>> 3;
+            BitBuffer.readBytes(plaintext, (int) (outPos >>> 3), outBytes, window.output);
+
+            if (!decodeRange(window.input, inShift, inBits, window.output, outShift, 0, count, unique)) return false;
+            BitBuffer.writeBytes(window.output, plaintext, (int) (outPos >>> 3), outBytes);
+        }
+
+        return true;
+    }
+
+    /**
+     * @return - number of blocks in each window of a byte buffer, a multiple of 64
+     */
+    private int windowBlocks() {
+        return Math.max(1, WINDOW_BITS / Math.max(getLength(), getDimension()) / 64) * 64;
+    }
+
+    /**
+     * Per-thread buffers for a window of plaintext and codetext, with room for a window starting part way into a byte
+     */
+    private static final class Window {
+        final long[] input;
+        final long[] output;
 
-            return plaintext;
+        Window(int bits) {
+            input = new long[BitMatrix.words(bits + 8)];
+            output = new long[BitMatrix.words(bits + 8)];
         }
     }
 
@@ -0,0 +1,32 @@
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Channel versions of ECCOutputStream and ECCInputStream
+ */
+public class ECCChannels {
+    private ECCChannels() {
+
+    }
+
+    /**
+     * Creates a channel which encodes the bytes written to it
+     * @param channel - channel to write the codetext to
+     * @param code - code to encode with
+     * @return - channel to write plaintext to, which must be closed to write the last block
+     */
+    public static WritableByteChannel newEncodingChannel(WritableByteChannel channel, IECC code) {
+        return Channels.newChannel(new ECCOutputStream(Channels.newOutputStream(channel), code));
+    }
+
+    /**
+     * Creates a channel which decodes the bytes read from another, correcting each block to a closest codeword
+     * @param channel - channel to read the codetext from
+     * @param code - code to decode with
+     * @return - channel to read plaintext from
+     */
+    public static ReadableByteChannel newDecodingChannel(ReadableByteChannel channel, IECC code) {
+        return Channels.newChannel(new ECCInputStream(Channels.newInputStream(channel), code));
+    }
+}
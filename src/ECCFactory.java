@@ -1,25 +1,226 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Makes codes, sharing each code between every factory from a cache of the most recently used codes.
+ * When several threads ask for a code that is not yet cached, only the first builds it and the rest wait for it.
+ */
 public class ECCFactory implements IECCFactory {
+    //Number of codes kept by default
+    public static final int DEFAULT_CACHE_SIZE = 32;
+    //Name of the system property that picks how new codes encode blocks, either matrix or generated
+    public static final String ENCODER_PROPERTY = "ecc.encoder";
+
+    private static int cacheSize = DEFAULT_CACHE_SIZE;
+    //In access order, so that the eldest entry is the least recently used
+    private static final LinkedHashMap<CodeKey, FutureTask<IECC>> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CodeKey, FutureTask<IECC>> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
     public ECCFactory() {
 
     }
 
     @Override
     public IECC makeHammingCode(int r) {
-        try {
-            return new HammingCode(r);
-        } catch (InvalidParameterException e) {
-            e.printStackTrace();
-            return null;
-        }
+        return cached(new CodeKey("hamming", r), () -> {
+            try {
+                return configure(new HammingCode(r));
+            } catch (InvalidParameterException e) {
+                e.printStackTrace();
+                return null;
+            }
+        });
     }
 
     @Override
     public IECC makeReedMullerCode(int k, int r) {
+        return makeReedMullerCode(k, r, ECC.DEFAULT_TABLE_BUDGET);
+    }
+
+    /** Make a Reed-Muller Code whose syndrome table is limited to a memory budget.
+     * @param k the length parameter
+     * @param r the r parameter
+     * @param tableBudget the memory budget for the syndrome table in bytes
+     * @return the code
+     */
+    public IECC makeReedMullerCode(int k, int r, long tableBudget) {
+        return cached(new CodeKey("reed-muller", k, r, tableBudget), () -> {
+            try {
+                return configure(new ReedMullerCode(k, r, tableBudget));
+            } catch (InvalidParameterException e) {
+                e.printStackTrace();
+                return null;
+            }
+        });
+    }
+
+    /** Make a Reed-Muller Code from a table file, so that the tables are only built by the first JVM to ask for them.
+     * If the file holds the tables of this code they are memory-mapped, and otherwise the code is built
+     * and its tables are written to the file. A file that cannot be loaded is reported on standard error and replaced.
+     * Codes are cached by file as well as parameters, so each file is read or written by the first request for it.
+     * @param k the length parameter
+     * @param r the r parameter
+     * @param tables the table file
+     * @return the code
+     * @throws IOException if the tables cannot be written to the file
+     */
+    public IECC makeReedMullerCode(int k, int r, Path tables) throws IOException {
+        try {
+            return cached(new CodeKey("reed-muller", k, r, tables.toAbsolutePath().normalize()), () -> {
+                if (Files.exists(tables)) {
+                    try {
+                        ReedMullerCode code = ReedMullerCode.loadTables(tables);
+                        if (code.getLength() == 1 << k && code.getDegree() == r && code.getTableBudget() == ECC.DEFAULT_TABLE_BUDGET) {
+                            return configure(code);
+                        }
+                        System.err.println(tables + " holds the tables of another code, rebuilding");
+                    } catch (IOException e) {
+                        System.err.println(e.getMessage() + ", rebuilding");
+                    }
+                }
+
+                try {
+                    ReedMullerCode code = new ReedMullerCode(k, r);
+                    code.saveTables(tables);
+                    return configure(code);
+                } catch (InvalidParameterException e) {
+                    e.printStackTrace();
+                    return null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Applies the system properties to a new code
+     * @param code - new code
+     * @return - the code, or a copy of it with the properties applied
+     */
+    private static ECC configure(ECC code) {
+        if ("generated".equals(System.getProperty(ENCODER_PROPERTY))) return code.withGeneratedEncoder(true);
+        return code;
+    }
+
+    /**
+     * Gets a code from the cache, building it if it is not there.
+     * Codes that could not be built are not cached.
+     * @param key - family and parameters of code
+     * @param constructor - builds the code, or returns null if the parameters are invalid
+     * @return - the code, or null if the parameters are invalid
+     */
+    private static IECC cached(CodeKey key, Callable<IECC> constructor) {
+        FutureTask<IECC> task;
+        boolean builder = false;
+
+        synchronized (CACHE) {
+            task = CACHE.get(key);
+            if (task == null) {
+                task = new FutureTask<>(constructor);
+                CACHE.put(key, task);
+                builder = true;
+            }
+        }
+
+        //The code is built outside the lock, so that other codes can be fetched meanwhile
+        if (builder) task.run();
+
+        IECC code;
+        boolean interrupted = false;
         try {
-            return new ReedMullerCode(k, r);
-        } catch (InvalidParameterException e) {
-            e.printStackTrace();
-            return null;
+            while (true) {
+                try {
+                    code = task.get();
+                    break;
+                } catch (InterruptedException e) {
+                    //Waits for the build regardless, as the code is wanted either way
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            forget(key, task);
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+
+        if (code == null) forget(key, task);
+        return code;
+    }
+
+    /**
+     * Removes a code from the cache, if it has not already been replaced
+     * @param key - family and parameters of code
+     * @param task - build of code
+     */
+    private static void forget(CodeKey key, FutureTask<IECC> task) {
+        synchronized (CACHE) {
+            CACHE.remove(key, task);
+        }
+    }
+
+    /**
+     * @return - the most codes kept in the cache
+     */
+    public static int getCacheSize() {
+        synchronized (CACHE) {
+            return cacheSize;
+        }
+    }
+
+    /**
+     * Sets the most codes kept in the cache, dropping the least recently used codes if there are more
+     * @param size - number of codes, or 0 to build a new code every time
+     */
+    public static void setCacheSize(int size) {
+        synchronized (CACHE) {
+            cacheSize = size;
+
+            while (CACHE.size() > cacheSize) {
+                CACHE.remove(CACHE.keySet().iterator().next());
+            }
+        }
+    }
+
+    /**
+     * Identifies a code by its family and parameters
+     */
+    private static final class CodeKey {
+        private final String family;
+        private final Object[] parameters;
+
+        CodeKey(String family, Object... parameters) {
+            this.family = family;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CodeKey)) return false;
+            CodeKey other = (CodeKey) o;
+            return family.equals(other.family) && Arrays.equals(parameters, other.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * family.hashCode() + Arrays.hashCode(parameters);
         }
     }
 }
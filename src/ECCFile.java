@@ -0,0 +1,171 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Encodes or decodes whole files with a Hamming or Reed-Muller code.
+ * Both files are memory-mapped a region at a time, each a whole multiple of 64 blocks so that every region
+ * starts on a byte boundary in both files, and each region is passed straight to the code's ByteBuffer methods,
+ * which split its blocks across the code's executor.
+ * The codetext has the same layout as ECCOutputStream writes, and as with ECCInputStream the decoded file
+ * may end with the zero bits that padded the last block.
+ *
+ * Usage: java ECCFile (encode | decode | decode-unique) (hamming r | rm k r) input output
+ */
+public class ECCFile {
+    //Number of plaintext or codetext bits to aim for in each region
+    private static final int REGION_BITS = 1 << 26;
+
+    private ECCFile() {
+
+    }
+
+    public static void main(String[] args) {
+        try {
+            if (args.length < 4) throw new IllegalArgumentException();
+
+            String mode = args[0];
+            ECC code = makeCode(args);
+            Path input = Paths.get(args[args.length - 2]);
+            Path output = Paths.get(args[args.length - 1]);
+
+            if (mode.equals("encode")) {
+                encodeFile(code, input, output);
+            } else if (mode.equals("decode") || mode.equals("decode-unique")) {
+                decodeFile(code, input, output, mode.equals("decode-unique"));
+            } else {
+                throw new IllegalArgumentException();
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Usage: java ECCFile (encode | decode | decode-unique) (hamming r | rm k r) input output");
+            System.exit(2);
+        } catch (UncorrectableErrorException e) {
+            System.err.println("Codetext contains a block with no unique closest codeword");
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Makes the code named by the command line arguments
+     * @param args - command line arguments
+     * @return - code
+     */
+    private static ECC makeCode(String[] args) {
+        ECCFactory factory = new ECCFactory();
+        IECC code = null;
+
+        if (args[1].equals("hamming") && args.length == 5) {
+            code = factory.makeHammingCode(Integer.parseInt(args[2]));
+        } else if (args[1].equals("rm") && args.length == 6) {
+            code = factory.makeReedMullerCode(Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+        }
+
+        if (code == null) throw new IllegalArgumentException();
+        return (ECC) code;
+    }
+
+    /**
+     * Encodes a file
+     * @param code - code to encode with
+     * @param input - plaintext file
+     * @param output - codetext file, replaced if it exists
+     * @throws IOException - if either file cannot be mapped
+     */
+    public static void encodeFile(ECC code, Path input, Path output) throws IOException {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long blocks = (in.size() * 8 + code.getDimension() - 1) / code.getDimension();
+            int regionBlocks = regionBlocks(code);
+
+            for (long first = 0; first < blocks; first += regionBlocks) {
+                int count = (int) Math.min(regionBlocks, blocks - first);
+
+                //Every region but the last is a whole number of bytes of plaintext
+                long start = first * code.getDimension() / 8;
+                long end = Math.min(in.size(), (first + count) * code.getDimension() / 8);
+                MappedByteBuffer plaintext = in.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                MappedByteBuffer codetext = out.map(FileChannel.MapMode.READ_WRITE, first * code.getLength() / 8,
+                        ((long) count * code.getLength() + 7) / 8);
+
+                code.encode(plaintext, 0, (end - start) * 8, codetext, 0);
+            }
+        }
+    }
+
+    /**
+     * Decodes a file, ignoring any bits after the last whole block
+     * @param code - code to decode with
+     * @param input - codetext file
+     * @param output - plaintext file, replaced if it exists
+     * @param unique - true if each block may only be corrected to a unique closest codeword
+     * @throws IOException - if either file cannot be mapped
+     * @throws UncorrectableErrorException - if unique and a block has no unique closest codeword
+     */
+    public static void decodeFile(ECC code, Path input, Path output, boolean unique) throws IOException, UncorrectableErrorException {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long blocks = in.size() * 8 / code.getLength();
+            long size = blocks * code.getDimension() / 8;
+            int regionBlocks = regionBlocks(code);
+
+            for (long first = 0; first < blocks; first += regionBlocks) {
+                int count = (int) Math.min(regionBlocks, blocks - first);
+                long start = first * code.getLength() / 8;
+                long end = Math.min(in.size(), ((first + count) * code.getLength() + 7) / 8);
+                MappedByteBuffer codetext = in.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+
+                //Only whole bytes of plaintext are kept, so the blocks after the last multiple of 64 may not fit
+                long outStart = first * code.getDimension() / 8;
+                long outEnd = Math.min(size, (first + count) * code.getDimension() / 8);
+                MappedByteBuffer plaintext = out.map(FileChannel.MapMode.READ_WRITE, outStart, outEnd - outStart);
+                int whole = count & -64;
+
+                if (whole > 0) decode(code, codetext, 0, (long) whole * code.getLength(), plaintext, 0, unique);
+                if (whole < count) {
+                    ByteBuffer tail = ByteBuffer.allocate(((count - whole) * code.getDimension() + 7) / 8);
+                    long tailStart = (long) whole * code.getDimension() / 8;
+
+                    decode(code, codetext, (long) whole * code.getLength(), (long) (count - whole) * code.getLength(),
+                            tail, 0, unique);
+                    plaintext.put((int) tailStart, tail, 0, (int) (outEnd - outStart - tailStart));
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes blocks between buffers with decodeAlways or decodeIfUnique
+     * @param code - code to decode with
+     * @param codetext - codetext buffer
+     * @param offset - position of the first codetext bit
+     * @param len - number of codetext bits
+     * @param plaintext - plaintext buffer
+     * @param plainOffset - position to write the first plaintext bit to
+     * @param unique - true if each block may only be corrected to a unique closest codeword
+     * @throws UncorrectableErrorException - if unique and a block has no unique closest codeword
+     */
+    private static void decode(ECC code, ByteBuffer codetext, long offset, long len, ByteBuffer plaintext, long plainOffset,
+                               boolean unique) throws UncorrectableErrorException {
+        if (unique) {
+            code.decodeIfUnique(codetext, offset, len, plaintext, plainOffset);
+        } else {
+            code.decodeAlways(codetext, offset, len, plaintext, plainOffset);
+        }
+    }
+
+    /**
+     * @return - number of blocks in each region, a multiple of 64
+     */
+    private static int regionBlocks(ECC code) {
+        return Math.max(1, REGION_BITS / Math.max(code.getLength(), code.getDimension()) / 64) * 64;
+    }
+}
@@ -0,0 +1,117 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An input stream which reads codetext from another stream and returns the decoded plaintext.
+ * It reads the layout written by ECCOutputStream, a bounded chunk of whole multiples of 64 blocks at a time.
+ * At the end of the stream only whole blocks are decoded, and only whole bytes of their plaintext returned,
+ * so (as with decodeAlways) the plaintext may end with the zero bits that padded its last block.
+ */
+public class ECCInputStream extends InputStream {
+    private final InputStream in;
+    private final IECC code;
+    private final boolean unique;
+    private final byte[] input;
+    private byte[] output = new byte[0];
+    private int pos;
+    private boolean eof;
+    private boolean closed;
+
+    /**
+     * Creates a stream which decodes each block to a closest codeword, with a buffer of around 64KB
+     * @param in - stream to read the codetext from
+     * @param code - code to decode with
+     */
+    public ECCInputStream(InputStream in, IECC code) {
+        this(in, code, false, ECCOutputStream.chunkBlocks(code, ECCOutputStream.DEFAULT_BUFFER_BITS));
+    }
+
+    /**
+     * Creates a stream which decodes a given number of blocks at a time
+     * @param in - stream to read the codetext from
+     * @param code - code to decode with
+     * @param unique - true to decode with decodeIfUnique, so that reads fail on a block with no unique closest codeword
+     * @param blocks - blocks per chunk, rounded up to a multiple of 64
+     */
+    public ECCInputStream(InputStream in, IECC code, boolean unique, int blocks) {
+        this.in = in;
+        this.code = code;
+        this.unique = unique;
+        this.input = new byte[((blocks + 63) / 64) * 8 * code.getLength()];
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos == output.length && !fill()) return -1;
+        return output[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+        if (len == 0) return 0;
+        if (pos == output.length && !fill()) return -1;
+
+        int n = Math.min(len, output.length - pos);
+        System.arraycopy(output, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return output.length - pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        in.close();
+    }
+
+    /**
+     * Reads and decodes the next chunk of codetext
+     * @return - false at the end of the stream
+     * @throws IOException - if reading fails, or a block has no unique closest codeword in unique mode
+     */
+    private boolean fill() throws IOException {
+        ensureOpen();
+        if (eof) return false;
+
+        int count = 0;
+        while (count < input.length) {
+            int n = in.read(input, count, input.length - count);
+            if (n < 0) {
+                eof = true;
+                break;
+            }
+            count += n;
+        }
+
+        //Any bits short of a whole block are padding
+        int blocks = (int) ((long) count * 8 / code.getLength());
+        if (blocks == 0) return false;
+
+        int bits = blocks * code.getLength();
+        BitSet codetext = BitSet.valueOf(ByteBuffer.wrap(input, 0, count));
+        BitSet plaintext;
+        try {
+            plaintext = unique ? code.decodeIfUnique(codetext, bits) : code.decodeAlways(codetext, bits);
+        } catch (UncorrectableErrorException e) {
+            throw new IOException("Uncorrectable block in codetext", e);
+        }
+
+        output = Arrays.copyOf(plaintext.toByteArray(), (int) ((long) blocks * code.getDimension() / 8));
+        pos = 0;
+        return output.length > 0 || fill();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) throw new IOException("Stream closed");
+    }
+}
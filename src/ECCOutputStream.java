@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An output stream which encodes the bytes written to it with an error correcting code and writes
+ * the codetext to another stream. Bytes are read into bits least significant bit first, as by BitSet.valueOf.
+ * Only a bounded number of blocks are held at once, in chunks of whole multiples of 64 blocks so that each
+ * encoded chunk is a whole number of bytes. On close the last chunk is padded to a whole number of blocks,
+ * as encode pads the plaintext, and then with zero bits to a whole byte.
+ */
+public class ECCOutputStream extends OutputStream {
+    private final OutputStream out;
+    private final IECC code;
+    private final byte[] buffer;
+    private int count;
+    private boolean closed;
+
+    //Number of plaintext or codetext bits to aim for in each chunk
+    public static final int DEFAULT_BUFFER_BITS = 1 << 19;
+
+    /**
+     * Creates a stream with a buffer of around 64KB
+     * @param out - stream to write the codetext to
+     * @param code - code to encode with
+     */
+    public ECCOutputStream(OutputStream out, IECC code) {
+        this(out, code, chunkBlocks(code, DEFAULT_BUFFER_BITS));
+    }
+
+    /**
+     * Creates a stream which encodes a given number of blocks at a time
+     * @param out - stream to write the codetext to
+     * @param code - code to encode with
+     * @param blocks - blocks per chunk, rounded up to a multiple of 64
+     */
+    public ECCOutputStream(OutputStream out, IECC code, int blocks) {
+        this.out = out;
+        this.code = code;
+        this.buffer = new byte[((blocks + 63) / 64) * 8 * code.getDimension()];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        buffer[count++] = (byte) b;
+        if (count == buffer.length) encodeBuffer();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+
+        while (len > 0) {
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+
+            if (count == buffer.length) encodeBuffer();
+        }
+    }
+
+    /**
+     * Flushes the codetext written so far. Bytes short of a full chunk stay buffered,
+     * as encoding them early would pad the middle of the stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        out.flush();
+    }
+
+    /**
+     * Encodes and writes any buffered bytes, padded to a whole number of blocks, and closes the stream
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+
+        try {
+            if (count > 0) encodeBuffer();
+            out.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Encodes the buffered bytes and writes the codetext
+     */
+    private void encodeBuffer() throws IOException {
+        int bits = count * 8;
+        int blocks = (bits + code.getDimension() - 1) / code.getDimension();
+        BitSet codetext = code.encode(BitSet.valueOf(ByteBuffer.wrap(buffer, 0, count)), bits);
+
+        //toByteArray drops trailing zero bytes, so the codetext is padded back out to its full length
+        out.write(Arrays.copyOf(codetext.toByteArray(), (int) (((long) blocks * code.getLength() + 7) / 8)));
+        count = 0;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) throw new IOException("Stream closed");
+    }
+
+    /**
+     * Chooses a number of blocks per chunk
+     * @param code - code being used
+     * @param bits - number of bits to aim for in each chunk
+     * @return - a multiple of 64 blocks, at least 64
+     */
+    static int chunkBlocks(IECC code, int bits) {
+        int blockBits = Math.max(code.getLength(), code.getDimension());
+        return Math.max(1, bits / blockBits / 64) * 64;
+    }
+}
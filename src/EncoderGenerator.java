@@ -0,0 +1,347 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Generates a BlockEncoder for a single code as a hidden class, whose encode method is a straight-line
+ * sequence of masks, shifts and XORs with the code's matrix inlined as constants, so that the JIT can keep
+ * the whole block in registers.
+ * <p>
+ * The encoding is found by encoding each unit block, so it matches encodeBlock whatever layout the code uses.
+ * Each codeword bit is either a copy of one message bit or the parity of several, and the encoder is built
+ * from whichever is shorter of:
+ * <ul>
+ *     <li>columns - the copied bits, one mask and shift for each distance they move, then each parity bit
+ *     as a bit count of the message masked by its column</li>
+ *     <li>rows - each row of the generator matrix masked by its message bit spread across the word</li>
+ * </ul>
+ * The class file is written directly, as it needs only a handful of instructions and no branches.
+ */
+public final class EncoderGenerator {
+    private static final int CLASS_VERSION = 61;
+    private static final String CLASS_NAME = "GeneratedEncoder";
+
+    //Instructions used by the encoders
+    private static final int ICONST_1 = 0x04;
+    private static final int LCONST_0 = 0x09;
+    private static final int BIPUSH = 0x10;
+    private static final int LDC2_W = 0x14;
+    private static final int LLOAD_1 = 0x1f;
+    private static final int LLOAD_3 = 0x21;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int LSTORE_3 = 0x42;
+    private static final int LSHL = 0x79;
+    private static final int LSHR = 0x7b;
+    private static final int LUSHR = 0x7d;
+    private static final int IAND = 0x7e;
+    private static final int LAND = 0x7f;
+    private static final int LOR = 0x81;
+    private static final int LXOR = 0x83;
+    private static final int I2L = 0x85;
+    private static final int LRETURN = 0xad;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+
+    private EncoderGenerator() {
+
+    }
+
+    /**
+     * Generates an encoder for a code
+     * @param code - code to encode blocks of
+     * @return - encoder, or null if the blocks or codewords of the code do not fit in a word
+     */
+    public static BlockEncoder generate(ECC code) {
+        int n = code.getLength();
+        int k = code.getDimension();
+        if (n > 64 || k > 64 || k == 0) return null;
+
+        //Row i is the codeword of the unit block i, and column j the message bits that codeword bit j depends on
+        long[] rows = new long[k];
+        long[] cols = new long[n];
+        long[] message = new long[1];
+        long[] codeword = new long[1];
+        for (int i = 0; i < k; i++) {
+            message[0] = 1L << i;
+            code.encodeBlock(message, codeword);
+            rows[i] = codeword[0] & BitMatrix.mask(n);
+
+            for (long bits = rows[i]; bits != 0; bits &= bits - 1) {
+                cols[Long.numberOfTrailingZeros(bits)] |= 1L << i;
+            }
+        }
+
+        byte[] classFile = writeClass(encodeMethod(rows, cols));
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+            return (BlockEncoder) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not define generated encoder", e);
+        }
+    }
+
+    /**
+     * Writes the instructions of encode(long), which keeps the message in local 1 and builds the codeword in local 3
+     * @param rows - codeword of each unit block
+     * @param cols - message bits that each codeword bit depends on
+     * @return - instructions, with long constants given as the constant itself in place of a pool index
+     */
+    private static Code encodeMethod(long[] rows, long[] cols) {
+        //Masks of the message bits copied to each distance above (or below, for negative shifts) their position
+        HashMap<Integer, Long> copies = new HashMap<>();
+        ArrayList<Integer> parities = new ArrayList<>();
+        for (int j = 0; j < cols.length; j++) {
+            if (Long.bitCount(cols[j]) == 1) {
+                copies.merge(j - Long.numberOfTrailingZeros(cols[j]), cols[j], (a, b) -> a | b);
+            } else if (cols[j] != 0) {
+                parities.add(j);
+            }
+        }
+
+        int setRows = 0;
+        for (long row : rows) {
+            if (row != 0) setRows++;
+        }
+
+        Code code = new Code();
+        code.op(LCONST_0).op(LSTORE_3);
+
+        if (3 * copies.size() + 5 * parities.size() <= 4 * setRows) {
+            for (int shift : copies.keySet()) {
+                code.op(LLOAD_1).constant(copies.get(shift)).op(LAND);
+                if (shift > 0) code.op(BIPUSH).op(shift).op(LSHL);
+                if (shift < 0) code.op(BIPUSH).op(-shift).op(LUSHR);
+                code.op(LLOAD_3).op(LOR).op(LSTORE_3);
+            }
+
+            for (int j : parities) {
+                code.op(LLOAD_1).constant(cols[j]).op(LAND).bitCount().op(ICONST_1).op(IAND).op(I2L);
+                if (j > 0) code.op(BIPUSH).op(j).op(LSHL);
+                code.op(LLOAD_3).op(LOR).op(LSTORE_3);
+            }
+        } else {
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i] == 0) continue;
+
+                //Moves bit i to the top and spreads it across the word
+                code.op(LLOAD_1);
+                if (i < 63) code.op(BIPUSH).op(63 - i).op(LSHL);
+                code.op(BIPUSH).op(63).op(LSHR);
+                code.constant(rows[i]).op(LAND).op(LLOAD_3).op(LXOR).op(LSTORE_3);
+            }
+        }
+
+        code.op(LLOAD_3).op(LRETURN);
+        return code;
+    }
+
+    /**
+     * Writes a class file implementing BlockEncoder with a no-argument constructor and the given encode method
+     * @param encode - instructions of encode(long)
+     * @return - class file
+     */
+    private static byte[] writeClass(Code encode) {
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.classRef(CLASS_NAME);
+        int superClass = pool.classRef("java/lang/Object");
+        int encoderInterface = pool.classRef("BlockEncoder");
+        int objectInit = pool.methodRef(superClass, "<init>", "()V");
+        int bitCount = pool.methodRef(pool.classRef("java/lang/Long"), "bitCount", "(J)I");
+        int codeName = pool.utf8("Code");
+        int initName = pool.utf8("<init>");
+        int initDescriptor = pool.utf8("()V");
+        int encodeName = pool.utf8("encode");
+        int encodeDescriptor = pool.utf8("(J)J");
+
+        byte[] encodeBytes = encode.resolve(pool, bitCount);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_VERSION);
+            pool.write(out);
+
+            //public final class GeneratedEncoder extends Object implements BlockEncoder
+            out.writeShort(0x0031);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(encoderInterface);
+            out.writeShort(0);
+
+            out.writeShort(2);
+            byte[] init = {ALOAD_0, (byte) INVOKESPECIAL, (byte) (objectInit >>> 8), (byte) objectInit, (byte) RETURN};
+            writeMethod(out, initName, initDescriptor, codeName, 1, 1, init);
+            writeMethod(out, encodeName, encodeDescriptor, codeName, 6, 5, encodeBytes);
+
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a public method with a Code attribute and no exception handlers
+     * @param out - class file to write to
+     * @param name - constant pool index of the method name
+     * @param descriptor - constant pool index of the method descriptor
+     * @param codeName - constant pool index of "Code"
+     * @param maxStack - most stack slots used
+     * @param maxLocals - number of local slots, including the arguments
+     * @param code - instructions
+     * @throws IOException - if the class file cannot be written
+     */
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeName,
+                                    int maxStack, int maxLocals, byte[] code) throws IOException {
+        out.writeShort(0x0001);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+
+        out.writeShort(codeName);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+
+    /**
+     * Instructions of a method, whose constants are added to the constant pool once the method is complete
+     */
+    private static final class Code {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        //Position and value of each long constant, and position of each call to Long.bitCount
+        private final ArrayList<Integer> constantPositions = new ArrayList<>();
+        private final ArrayList<Long> constants = new ArrayList<>();
+        private final ArrayList<Integer> bitCounts = new ArrayList<>();
+
+        Code op(int value) {
+            bytes.write(value);
+            return this;
+        }
+
+        Code constant(long value) {
+            op(LDC2_W);
+            constantPositions.add(bytes.size());
+            constants.add(value);
+            return op(0).op(0);
+        }
+
+        Code bitCount() {
+            op(INVOKESTATIC);
+            bitCounts.add(bytes.size());
+            return op(0).op(0);
+        }
+
+        /**
+         * Fills in the constant pool indices of the method
+         * @param pool - constant pool of the class
+         * @param bitCount - constant pool index of Long.bitCount
+         * @return - instructions
+         */
+        byte[] resolve(ConstantPool pool, int bitCount) {
+            byte[] code = bytes.toByteArray();
+
+            for (int c = 0; c < constants.size(); c++) {
+                int index = pool.longConstant(constants.get(c));
+                code[constantPositions.get(c)] = (byte) (index >>> 8);
+                code[constantPositions.get(c) + 1] = (byte) index;
+            }
+            for (int position : bitCounts) {
+                code[position] = (byte) (bitCount >>> 8);
+                code[position + 1] = (byte) bitCount;
+            }
+
+            return code;
+        }
+    }
+
+    /**
+     * Constant pool of a class file, sharing equal entries
+     */
+    private static final class ConstantPool {
+        private static final int UTF8 = 1;
+        private static final int LONG = 5;
+        private static final int CLASS = 7;
+        private static final int METHOD_REF = 10;
+        private static final int NAME_AND_TYPE = 12;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final HashMap<Object, Integer> entries = new HashMap<>();
+        //Index of the next entry, as entry 0 is unused
+        private int next = 1;
+
+        int utf8(String value) {
+            return entry("utf8 " + value, 1, () -> {
+                out.writeByte(UTF8);
+                out.writeUTF(value);
+            });
+        }
+
+        int classRef(String name) {
+            int nameIndex = utf8(name);
+            return entry("class " + name, 1, () -> {
+                out.writeByte(CLASS);
+                out.writeShort(nameIndex);
+            });
+        }
+
+        int methodRef(int owner, String name, String descriptor) {
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            int nameAndType = entry("nameAndType " + name + descriptor, 1, () -> {
+                out.writeByte(NAME_AND_TYPE);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+            return entry("method " + owner + " " + name + descriptor, 1, () -> {
+                out.writeByte(METHOD_REF);
+                out.writeShort(owner);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        int longConstant(long value) {
+            //Long constants take two entries
+            return entry(value, 2, () -> {
+                out.writeByte(LONG);
+                out.writeLong(value);
+            });
+        }
+
+        private int entry(Object key, int size, Entry writer) {
+            Integer index = entries.get(key);
+            if (index != null) return index;
+
+            try {
+                writer.write();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            entries.put(key, next);
+            next += size;
+            return next - size;
+        }
+
+        void write(DataOutputStream target) throws IOException {
+            target.writeShort(next);
+            target.write(bytes.toByteArray());
+        }
+
+        private interface Entry {
+            void write() throws IOException;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * The inner loops of the products of a packed BitMatrix and a packed vector.
+ * The matrix is stored row-major, with each row taking a whole number of 64-bit words.
+ */
+public interface GF2Kernel {
+
+    /**
+     * Multiplies a vector by a matrix (vector * matrix) by XORing together the rows selected by the vector
+     * @param data - packed matrix
+     * @param rows - number of rows
+     * @param words - number of words in each row
+     * @param vector - packed vector with (at least) one bit per row, only the first rows bits of which are used
+     * @param result - packed result with one bit per column, overwritten
+     */
+    void leftMultiply(long[] data, int rows, int words, long[] vector, long[] result);
+
+    /**
+     * Multiplies a matrix by a column vector (matrix * vector), taking the parity of each row ANDed with the vector
+     * @param data - packed matrix
+     * @param rows - number of rows
+     * @param words - number of words in each row
+     * @param vector - packed vector with (at least) one bit per column
+     * @param result - packed result with one bit per row, overwritten
+     */
+    void rightMultiply(long[] data, int rows, int words, long[] vector, long[] result);
+}
@@ -1,8 +1,19 @@
 import java.lang.Math;
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.HashMap;
 
 public class HammingCode extends ECC {
+    //For each parity bit, a packed mask of the (0-based) block positions it covers
+    private long[][] parityMasks;
+    //Runs of data bits between parity bits: position in the block, position in the plaintext block and length
+    private int[] runStart;
+    private int[] runOffset;
+    private int[] runLength;
+    //Position in the block of each data bit, in plaintext order
+    private int[] dataPositions;
+    //Per-thread slices, syndrome slices, transpose space and packed blocks for decoding 64 blocks at once
+    private final ThreadLocal<long[][]> groupBuffers = ThreadLocal.withInitial(() -> new long[][] {
+        new long[getLength()], new long[parityMasks.length], new long[64], new long[getLength()], new long[getDimension()]});
 
     /**
      * Constructor for HammingCode class
@@ -17,161 +28,195 @@ public class HammingCode extends ECC {
             setLen((int) Math.pow(2, r) - 1);
             //Dimension is k, where k is n - r (length of code minus number of parity bits)
             setDim(getLength() - r);
+            genTables(r);
         }
     }
 
     /**
-     * converts a vector of plaintext to the corresponding coded text.
-     * @param plaintext the binary input
-     * @param len the length of the plaintext
-     * @return the encoded version of plaintext (padded with zeros to a whole number of blocks)
+     * Precomputes the masks used to calculate each parity bit and the runs used to place the data bits
+     * @param r - parity bits
      */
-    public BitSet encode(BitSet plaintext, int len) {
-        int size = encodedLength(len);
+    private void genTables(int r) {
+        parityMasks = new long[r][BitMatrix.words(getLength())];
+
+        //Parity bit i covers every (1-based) position with bit i set
+        for (int pos = 1; pos <= getLength(); pos++) {
+            for (int i = 0; i < r; i++) {
+                if ((pos & (1 << i)) != 0) parityMasks[i][(pos - 1) >>> 6] |= 1L << (pos - 1);
+            }
+        }
 
-        BitSet encoding = new BitSet(size);
-        setPlainText(encoding, plaintext, size);
-        setParityBits(encoding, size);
+        //Data bits fill the gaps between parity bits 2^i and 2^(i + 1)
+        runStart = new int[r - 1];
+        runOffset = new int[r - 1];
+        runLength = new int[r - 1];
+        for (int i = 1, offset = 0; i < r; i++) {
+            runStart[i - 1] = 1 << i;
+            runOffset[i - 1] = offset;
+            runLength[i - 1] = (1 << i) - 1;
+            offset += runLength[i - 1];
+        }
 
-        return encoding;
+        dataPositions = new int[getDimension()];
+        for (int run = 0, index = 0; run < runStart.length; run++) {
+            for (int pos = runStart[run]; pos < runStart[run] + runLength[run]; pos++) dataPositions[index++] = pos;
+        }
     }
 
     /**
-     * Checks if number is a power of two
-     * @param x - number to check
-     * @return - true or false
+     * Encodes a single block by placing its data bits and setting the parity bits
+     * @param message - packed block of plaintext
+     * @param codeword - packed encoded block, overwritten
      */
-    boolean powerOfTwo(int x) {
-        return (x != 0) && ((x & (x - 1)) == 0);
+    @Override
+    protected void encodeBlock(long[] message, long[] codeword) {
+        Arrays.fill(codeword, 0);
+        setPlainText(codeword, message, 0);
+        setParityBits(codeword);
     }
 
     /**
-     * Decodes message by correcting any 1-bit error
-     * and stripping the parity bits
-     * @param codetext - message to be decoded
-     * @param len - length of message
-     * @return - decoded message
+     * Strips parity bits from a corrected block
+     * @param block - packed corrected block
+     * @param message - packed block of plaintext, overwritten
      */
-    public BitSet decodeAlways(BitSet codetext, int len) {
-        return stripParity(correctError(codetext, len), len);
+    @Override
+    protected void stripParity(long[] block, long[] message) {
+        for (int run = 0; run < runStart.length; run++) {
+            BitBuffer.copy(block, runStart[run], message, runOffset[run], runLength[run]);
+        }
     }
 
     /**
-     * Strips parity bits from encoding
-     * @param codetext - encoding to strip parity
-     * @param len - length of encoding
-     * @return decoded BitSet
+     * Corrects any single error in a block. Hamming codes are perfect, so every block
+     * is within one bit of a unique codeword and correction always succeeds.
+     * @param block - packed block to correct in place
+     * @param unique - unused, as the closest codeword is always unique
+     * @return - CLEAN if the block was already a codeword, otherwise CORRECTED
      */
-    private BitSet stripParity(BitSet codetext, int len) {
-        BitSet decoding = new BitSet(len);
-        int index = 0;
-
-        for (int i = 1; i <= len; i++) {
-            if (!powerOfTwo(i)) decoding.set(index++, codetext.get(i - 1));
-        }
-
-        return decoding;
+    @Override
+    protected int correctBlock(long[] block, boolean unique) {
+        //The syndrome of a Hamming code is the (1-based) position of the error bit
+        int errOffset = errorPosition(block);
+        if (errOffset == 0) return CLEAN;
+
+        block[(errOffset - 1) >>> 6] ^= 1L << (errOffset - 1);
+        return CORRECTED;
     }
 
     /**
-     * Corrects codetext with a single error
-     * @param codetext - to be corrected
-     * @param len - length of codetext
-     * @return corrected codetext{
-            if
+     * Decodes 64 consecutive blocks entirely bit-sliced. With each word holding one position of all 64 blocks,
+     * syndrome bit i of every block is the XOR of the slices at the positions with bit i set, and a data position
+     * is in error in exactly the blocks whose syndrome equals it, found by ANDing the syndrome slices (or their
+     * complements). Hamming codes are perfect, so every block is corrected.
+     * @param codetext - packed codetext, left unchanged
+     * @param offset - position of the first block
+     * @param plaintext - packed plaintext to write the decoded blocks to
+     * @param plainOffset - position to write the first decoded block to
+     * @param unique - unused, as the closest codeword is always unique
+     * @return - true
      */
-    BitSet correctError(BitSet codetext, int len) {
-        HashMap<Integer, Boolean> pbits = new HashMap<>();
-        int errOffset = 0;
-        int exp = 0;
+    @Override
+    protected boolean decodeGroup(long[] codetext, int offset, long[] plaintext, int plainOffset, boolean unique) {
+        long[][] buffers = groupBuffers.get();
+        long[] slices = buffers[0];
+        long[] syndrome = buffers[1];
+        long[] matrix = buffers[2];
+        long[] group = buffers[3];
+        long[] decoded = buffers[4];
+
+        BitBuffer.copy(codetext, offset, group, 0, getLength() << 6);
+        sliceBlocks(group, slices, matrix);
+
+        for (int i = 0; i < syndrome.length; i++) {
+            syndrome[i] = 0;
+            for (int pos = (1 << i) - 1; pos < getLength(); pos++) {
+                //Skips to the next run of positions with bit i set
+                if (((pos + 1) & (1 << i)) == 0) pos += (1 << i) - 1;
+                else syndrome[i] ^= slices[pos];
+            }
+        }
 
-        //Records current parity bits of codetext and sets each to 0
-        for (int i = 1; i < len; i = (int) Math.pow(2, ++exp)) {
-            pbits.put(i, codetext.get(i - 1));
-            codetext.set(i - 1, false);
+        CodeMetrics metrics = getMetrics();
+        if (metrics != null) {
+            long errors = 0;
+            for (long word : syndrome) errors |= word;
+            metrics.addBlocks(64 - Long.bitCount(errors), Long.bitCount(errors));
+        }
 
+        //Only data bits are returned, so only they need correcting
+        for (int pos : dataPositions) {
+            long error = -1L;
+            for (int i = 0; i < syndrome.length; i++) {
+                error &= ((pos + 1) & (1 << i)) != 0 ? syndrome[i] : ~syndrome[i];
+            }
+            slices[pos] ^= error;
         }
 
-        //Recomputes the parity bits of the codetext
-        BitSet corrected = setParityBits(codetext, len);
+        //Transposes the corrected data bits back, 64 of each block at a time
+        for (int col = 0; col < getDimension(); col += 64) {
+            int count = Math.min(64, getDimension() - col);
+
+            Arrays.fill(matrix, 0);
+            for (int j = 0; j < count; j++) matrix[j] = slices[dataPositions[col + j]];
+            BitMatrix.transpose64(matrix);
 
-        //Works out the offset of the error bit using differences between original and recomputed parity bits
-        exp = 0;
-        for (int i = 1; i < len; i = (int) Math.pow(2, ++exp)) {
-            if (!pbits.get(i).equals(corrected.get(i - 1))) errOffset += i;
-            codetext.set(i - 1, pbits.get(i));
+            for (int b = 0, pos = col; b < 64; b++, pos += getDimension()) {
+                BitBuffer.deposit(decoded, pos, count, matrix[b]);
+            }
         }
 
-        //Corrects the error bit
-        corrected = codetext;
-        if (errOffset > 0) corrected.flip(errOffset - 1);
-        return corrected;
+        BitBuffer.copy(decoded, 0, plaintext, plainOffset, getDimension() << 6);
+        return true;
     }
 
     /**
-     * Returns the length of a Code encoding a code of plainLength
-     * @param plainLength - length of plaintext
-     * @return - length of encoding
+     * Calculates the syndrome of a block as the XOR of the (1-based) positions of its set bits,
+     * since parity bit i checks exactly the positions with bit i set
+     * @param block - packed block
+     * @return - position of the error bit, or 0 if the block is a codeword
      */
-    private int encodedLength(int plainLength) {
-        int d = getDimension();
-        int l = getLength();
-        return ((plainLength + d - 1) / d) * l;
+    int errorPosition(long[] block) {
+        int syndrome = 0;
+
+        for (int w = 0; w < block.length; w++) {
+            //Visits only the set bits of the word
+            for (long bits = block[w]; bits != 0; bits &= bits - 1) {
+                syndrome ^= (w << 6) + Long.numberOfTrailingZeros(bits) + 1;
+            }
+        }
+
+        return syndrome;
     }
 
     /**
-     * Assigns plaintext characters to a Hamming Encoding,
+     * Assigns a block of plaintext to a Hamming encoded block,
      * leaving spaces for parity bits to be set.
-     * @param encoding - hamming encoding BitSet
-     * @param plaintext - plain text BitSet
-     * @param size - total size of Hamming Encoding including parity bits
-     * @return
+     * @param block - packed encoded block, with the data positions clear
+     * @param plaintext - packed plaintext
+     * @param offset - position of the block in the plaintext
      */
-    private BitSet setPlainText(BitSet encoding, BitSet plaintext, int size) {
-        int exp = 0;
-        int powTwo = (int) Math.pow(2, exp++);
-        int textIndex = 0;
-
-        for (int i = 1; i <= size; i++) {
-            if (i == powTwo) {
-                powTwo = (int) Math.pow(2, exp++);
-            } else {
-                encoding.set(i - 1, plaintext.get(textIndex++));
-            }
+    private void setPlainText(long[] block, long[] plaintext, int offset) {
+        for (int run = 0; run < runStart.length; run++) {
+            BitBuffer.copy(plaintext, offset + runOffset[run], block, runStart[run], runLength[run]);
         }
-
-        return encoding;
     }
 
     /**
-     * Sets the parity bits of encoding based on plaintext bits
-     * @param encoding - BitSet to have parity bits set
-     * @param size - size of encoding
-     * @return encoding with correct parity
+     * Sets the parity bits of a block based on its data bits,
+     * each as the parity of the bits under its mask
+     * @param block - packed block with the parity positions clear
      */
-    private BitSet setParityBits(BitSet encoding, int size) {
-        int exp = 0;
-        int powTwo = (int) Math.pow(2, exp++);
-        int set = 0;
-
-        //While the power computed is less than or equal to the size of the encoding
-        while (powTwo <= size) {
-            //Skip block of 2^n
-            for (int offset = 0; (powTwo + offset) <= size; offset += 2 * powTwo) {
-                //Iterate across current block of size 2^n and record number of set bits
-                for (int i = powTwo; i <= (2* powTwo - 1); i++) {
-                    if (encoding.get(offset + i - 1)) set++;
-                }
+    private void setParityBits(long[] block) {
+        for (int i = 0; i < parityMasks.length; i++) {
+            int set = 0;
+            for (int w = 0; w < block.length; w++) {
+                set += Long.bitCount(block[w] & parityMasks[i][w]);
             }
 
             //If number of set bits is odd, set parity bit
-            if (set % 2 != 0) encoding.set(powTwo - 1);
-
-            set = 0;
-            powTwo = (int) Math.pow(2, exp++);
+            block[((1 << i) - 1) >>> 6] |= (long) (set & 1) << ((1 << i) - 1);
         }
-
-        return encoding;
     }
 
     public String toString() {
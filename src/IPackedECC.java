@@ -0,0 +1,84 @@
+import java.nio.ByteBuffer;
+
+/**
+ * A companion to IECC which works on vectors packed into longs or bytes rather than BitSets,
+ * so that callers can reuse their own buffers instead of allocating a BitSet per call.
+ * Bit i of a vector is bit i % 64 of word i / 64, as in BitSet.toLongArray(), or bit i % 8 of byte i / 8
+ * (least significant bit first), as in BitSet.valueOf(ByteBuffer), whatever the order of the buffer.
+ * Each method reads a range of bits, padding it with zeros to a whole number of blocks, and writes whole
+ * blocks to the output from a given bit onwards, leaving the output bits outside them unchanged.
+ * The byte buffer methods work on direct buffers (and memory segments, through asByteBuffer) in place,
+ * using absolute indices so that the position and limit of the buffers are left alone.
+ */
+public interface IPackedECC extends IECC {
+
+    /**
+     * converts a range of packed plaintext to the corresponding coded text.
+     * @param plaintext the packed input
+     * @param offset the position of the first plaintext bit
+     * @param len the length of the plaintext
+     * @param codetext the packed output, large enough for the padded codetext
+     * @param codeOffset the position to write the first codetext bit to
+     * @return the number of codetext bits written
+     */
+    int encode(long[] plaintext, int offset, int len, long[] codetext, int codeOffset);
+
+    /**
+     * decodes a range of packed coded text, replacing each block with the plaintext corresponding to A closest codeword.
+     * @param codetext the packed input
+     * @param offset the position of the first codetext bit
+     * @param len the length of the codetext
+     * @param plaintext the packed output, large enough for the padded plaintext
+     * @param plainOffset the position to write the first plaintext bit to
+     * @return the number of plaintext bits written
+     */
+    int decodeAlways(long[] codetext, int offset, int len, long[] plaintext, int plainOffset);
+
+    /**
+     * decodes a range of packed coded text, replacing each block with the plaintext corresponding to the unique
+     * closest codeword, if there isn't one then it throws an exception.
+     * @param codetext the packed input
+     * @param offset the position of the first codetext bit
+     * @param len the length of the codetext
+     * @param plaintext the packed output, large enough for the padded plaintext
+     * @param plainOffset the position to write the first plaintext bit to
+     * @return the number of plaintext bits written
+     * @throws UncorrectableErrorException if there is no uniquely best decoding
+     */
+    int decodeIfUnique(long[] codetext, int offset, int len, long[] plaintext, int plainOffset) throws UncorrectableErrorException;
+
+    /**
+     * converts a range of plaintext in a byte buffer to the corresponding coded text.
+     * @param plaintext the input buffer
+     * @param offset the position of the first plaintext bit
+     * @param len the length of the plaintext
+     * @param codetext the output buffer, large enough for the padded codetext
+     * @param codeOffset the position to write the first codetext bit to
+     * @return the number of codetext bits written
+     */
+    long encode(ByteBuffer plaintext, long offset, long len, ByteBuffer codetext, long codeOffset);
+
+    /**
+     * decodes a range of coded text in a byte buffer, replacing each block with the plaintext corresponding to A closest codeword.
+     * @param codetext the input buffer
+     * @param offset the position of the first codetext bit
+     * @param len the length of the codetext
+     * @param plaintext the output buffer, large enough for the padded plaintext
+     * @param plainOffset the position to write the first plaintext bit to
+     * @return the number of plaintext bits written
+     */
+    long decodeAlways(ByteBuffer codetext, long offset, long len, ByteBuffer plaintext, long plainOffset);
+
+    /**
+     * decodes a range of coded text in a byte buffer, replacing each block with the plaintext corresponding to the unique
+     * closest codeword, if there isn't one then it throws an exception.
+     * @param codetext the input buffer
+     * @param offset the position of the first codetext bit
+     * @param len the length of the codetext
+     * @param plaintext the output buffer, large enough for the padded plaintext
+     * @param plainOffset the position to write the first plaintext bit to
+     * @return the number of plaintext bits written
+     * @throws UncorrectableErrorException if there is no uniquely best decoding
+     */
+    long decodeIfUnique(ByteBuffer codetext, long offset, long len, ByteBuffer plaintext, long plainOffset) throws UncorrectableErrorException;
+}
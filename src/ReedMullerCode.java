@@ -1,24 +1,302 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
+import java.util.zip.CRC32;
 
 public class ReedMullerCode extends ECC {
+    private int degree;
+    private int[] points;
+    //Column of each evaluation point, the inverse of points
+    private int[] positions;
+    private int[][] monomials;
+    private final ThreadLocal<byte[][]> majorityBuffers = ThreadLocal.withInitial(() -> new byte[2][getLength()]);
+    private final ThreadLocal<int[]> transformBuffer = ThreadLocal.withInitial(() -> new int[getLength()]);
+    private final ThreadLocal<long[]> plotkinBuffer = ThreadLocal.withInitial(() -> new long[BitMatrix.words(getLength())]);
+    private long[] lowDegree;
+    private boolean plotkinEncoding;
+
+    //Masks of the bits in each word whose index has bit i clear, for i = 0 to 5
+    private static final long[] LOWER_HALVES = {
+        0x5555555555555555L, 0x3333333333333333L, 0x0F0F0F0F0F0F0F0FL,
+        0x00FF00FF00FF00FFL, 0x0000FFFF0000FFFFL, 0x00000000FFFFFFFFL
+    };
+
+    //Start of every table file, "RMCT" read as a little-endian int
+    private static final int TABLE_MAGIC = 0x54434D52;
+    private static final int TABLE_VERSION = 2;
+    private static final int TABLE_HEADER_BYTES = 64;
+    //Bytes of the header covered by the checksums, which are stored just after them
+    private static final int TABLE_CHECKED_BYTES = 48;
+    private static final int TABLE_CHECKSUM = 48;
+    private static final int TABLE_WORDS_CHECKSUM = 56;
 
     public ReedMullerCode(int k, int r) throws InvalidParameterException {
-        if (r > k || (k < 0) || (r < 0)) {
+        this(k, r, DEFAULT_TABLE_BUDGET);
+    }
+
+    /**
+     * Constructor for ReedMullerCode class with a limit on the memory used by the syndrome table
+     * @param k - length parameter
+     * @param r - degree parameter
+     * @param tableBudget - memory budget for the syndrome table in bytes
+     */
+    public ReedMullerCode(int k, int r, long tableBudget) throws InvalidParameterException {
+        if (r > k || (k < 0) || (r < 0) || tableBudget < 0) {
             throw new InvalidParameterException();
         } else {
             setDistance((int) Math.pow(2, k - r));
             setLen((int) Math.pow(2, k));
             setDim(dimension(r, k));
-
-            setGenMatrix(generateMatrix(k, r));
-            standardise(getGenMatrix());
+            setTableBudget(tableBudget);
+
+            degree = r;
+            monomials = genMonomials(k, r);
+
+            //Column c of the generated matrix holds each monomial evaluated at the point whose variables are the bits of c
+            ArrayList<BitSet> genMatrix = generateMatrix(k, r);
+            int[] order = informationSetFirst(r);
+            permuteColumns(genMatrix, order);
+            int[] swaps = standardise(genMatrix);
+
+            points = new int[getLength()];
+            positions = new int[getLength()];
+            lowDegree = new long[BitMatrix.words(getLength())];
+            for (int pos = 0; pos < getLength(); pos++) {
+                points[pos] = order[swaps[pos]];
+                positions[points[pos]] = pos;
+                if (Integer.bitCount(pos) <= r) lowDegree[pos >>> 6] |= 1L << pos;
+            }
+            setGenMatrix(genMatrix);
             setParCheckMatrix(genParityMatrix());
-            setSynTable(genSynTable());
+            plotkinEncoding = plotkinCheaper();
+
+            //First order codes are decoded by the Hadamard transform, which needs no table
+            if (r != 1) setSynTable(genSynTable());
+        }
+    }
+
+    /**
+     * Constructor for ReedMullerCode class from tables written by saveTables
+     * @param header - validated header of the table file
+     * @param body - tables following the header
+     */
+    private ReedMullerCode(ByteBuffer header, ByteBuffer body) {
+        int k = header.getInt(8);
+        int r = header.getInt(12);
+        int synBits = (1 << k) - dimension(r, k);
+
+        setDistance(1 << (k - r));
+        setLen(1 << k);
+        setDim(dimension(r, k));
+        setTableBudget(header.getLong(16));
+
+        degree = r;
+        monomials = genMonomials(k, r);
+
+        points = new int[getLength()];
+        positions = new int[getLength()];
+        lowDegree = new long[BitMatrix.words(getLength())];
+        body.asIntBuffer().get(points);
+        body.position(align(getLength() * Integer.BYTES));
+        for (int pos = 0; pos < getLength(); pos++) {
+            positions[points[pos]] = pos;
+            if (Integer.bitCount(pos) <= r) lowDegree[pos >>> 6] |= 1L << pos;
+        }
+
+        setGenMatrix(readMatrix(body, getDimension(), getLength()));
+        setParCheckMatrix(readMatrix(body, getLength(), synBits));
+        plotkinEncoding = plotkinCheaper();
+        if (header.getInt(36) != 0) setSynTable(SyndromeTable.read(body));
+    }
+
+    /**
+     * @return - degree r of the code
+     */
+    public int getDegree() {
+        return degree;
+    }
+
+    /**
+     * Writes the generator matrix, column permutation and syndrome table of this code to a file,
+     * so that loadTables can restore the code without building them again.
+     * The file is written beside the target and then moved over it, so a file being read is never changed.
+     * <p>
+     * All values are little-endian. A 64 byte header holds the magic number, format version, k, r, table budget,
+     * length, dimension, distance, whether there is a syndrome table, the number of bytes that follow the header,
+     * a CRC-32 of everything but the words of the syndrome table, and a CRC-32 of those words. Then come the evaluation
+     * point of each column as ints, padded to a multiple of 8 bytes, the rows of the generator and parity check matrices
+     * packed into longs, and last the syndrome table (see SyndromeTable.write).
+     * @param file - file to write
+     * @throws IOException - if the file cannot be written
+     */
+    public void saveTables(Path file) throws IOException {
+        int k = Integer.numberOfTrailingZeros(getLength());
+        int synBits = getLength() - getDimension();
+        long tableStart = tableStart(getLength(), getDimension());
+        long bodyBytes = tableStart - TABLE_HEADER_BYTES + (getSynTable() == null ? 0 : getSynTable().serialisedBytes());
+        int wordsStart = (int) tableStart + (getSynTable() == null ? 0 : SyndromeTable.HEADER_BYTES);
+
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, TABLE_HEADER_BYTES + bodyBytes);
+                out.order(ByteOrder.LITTLE_ENDIAN);
+
+                out.putInt(TABLE_MAGIC).putInt(TABLE_VERSION).putInt(k).putInt(degree).putLong(getTableBudget());
+                out.putInt(getLength()).putInt(getDimension()).putInt(getDistance()).putInt(getSynTable() == null ? 0 : 1);
+                out.putLong(bodyBytes);
+
+                out.position(TABLE_HEADER_BYTES);
+                out.asIntBuffer().put(points);
+                out.position(TABLE_HEADER_BYTES + align(getLength() * Integer.BYTES));
+                writeMatrix(out, getGenMatrix(), getLength());
+                writeMatrix(out, getParCheckMatrix(), synBits);
+                if (getSynTable() != null) getSynTable().write(out);
+
+                out.putLong(TABLE_CHECKSUM, checksum(out, 0, TABLE_CHECKED_BYTES, TABLE_HEADER_BYTES, wordsStart));
+                out.putLong(TABLE_WORDS_CHECKSUM, checksum(out, wordsStart, out.capacity()));
+                out.force();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
         }
     }
 
+    /**
+     * Restores a code from tables written by saveTables, without checking the words of the syndrome table.
+     * The file is memory-mapped and the syndrome table is read from the mapping in place, so its pages are only
+     * read as blocks are decoded and every JVM that loads the same file shares one copy of it in the page cache.
+     * The rest of the file, which is read at once, is checked against its checksum.
+     * The file must not be changed while the code is in use.
+     * @param file - file written by saveTables
+     * @return - the code
+     * @throws IOException - if the file cannot be read, is not a table file, or fails its checksum
+     */
+    public static ReedMullerCode loadTables(Path file) throws IOException {
+        return loadTables(file, false);
+    }
+
+    /**
+     * Restores a code from tables written by saveTables, as loadTables(file) does
+     * @param file - file written by saveTables
+     * @param verifyTable - true to also check the words of the syndrome table, which reads the whole file
+     * @return - the code
+     * @throws IOException - if the file cannot be read, is not a table file, or fails a checksum
+     */
+    public static ReedMullerCode loadTables(Path file, boolean verifyTable) throws IOException {
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            //The mapping stays valid after the channel is closed
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        in.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (in.capacity() < TABLE_HEADER_BYTES || in.getInt(0) != TABLE_MAGIC) {
+            throw new IOException(file + " is not a Reed-Muller table file");
+        }
+        if (in.getInt(4) != TABLE_VERSION) {
+            throw new IOException(file + " has table format version " + in.getInt(4) + ", expected " + TABLE_VERSION);
+        }
+
+        int k = in.getInt(8);
+        int r = in.getInt(12);
+        int length = in.getInt(24);
+        int dimension = in.getInt(28);
+        if (k < 0 || k > 30 || r < 0 || r > k || length != 1 << k || dimension < 1 || dimension > length
+                || in.getLong(40) != in.capacity() - TABLE_HEADER_BYTES) {
+            throw new IOException(file + " has an invalid header");
+        }
+
+        long wordsStart = tableStart(length, dimension) + (in.getInt(36) != 0 ? SyndromeTable.HEADER_BYTES : 0);
+        if (wordsStart > in.capacity()) {
+            throw new IOException(file + " has an invalid header");
+        }
+        if (in.getLong(TABLE_CHECKSUM) != checksum(in, 0, TABLE_CHECKED_BYTES, TABLE_HEADER_BYTES, (int) wordsStart)) {
+            throw new IOException(file + " fails its checksum");
+        }
+        if (verifyTable && in.getLong(TABLE_WORDS_CHECKSUM) != checksum(in, (int) wordsStart, in.capacity())) {
+            throw new IOException(file + " fails the checksum of its syndrome table");
+        }
+
+        ByteBuffer body = in.position(TABLE_HEADER_BYTES).slice().order(ByteOrder.LITTLE_ENDIAN);
+        return new ReedMullerCode(in, body);
+    }
+
+    /**
+     * Calculates the CRC-32 of ranges of a table file
+     * @param file - whole table file
+     * @param bounds - start and end of each range
+     * @return - checksum
+     */
+    private static long checksum(ByteBuffer file, int... bounds) {
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < bounds.length; i += 2) {
+            crc.update(file.duplicate().position(bounds[i]).limit(bounds[i + 1]));
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Finds where the syndrome table starts in a table file, after the header, points and matrices
+     * @param length - length of the code
+     * @param dimension - dimension of the code
+     * @return - offset of the syndrome table
+     */
+    private static long tableStart(int length, int dimension) {
+        return TABLE_HEADER_BYTES + align(length * Integer.BYTES)
+                + ((long) dimension * BitMatrix.words(length) + (long) length * BitMatrix.words(length - dimension)) * Long.BYTES;
+    }
+
+    /**
+     * Writes the rows of a matrix as packed little-endian longs
+     * @param out - buffer to write to, from its position
+     * @param matrix - rows of matrix
+     * @param cols - number of columns
+     */
+    private static void writeMatrix(ByteBuffer out, ArrayList<BitSet> matrix, int cols) {
+        for (BitSet row : matrix) {
+            for (long word : BitMatrix.toWords(row, cols)) out.putLong(word);
+        }
+    }
+
+    /**
+     * Reads the rows of a matrix written by writeMatrix
+     * @param in - buffer to read from, from its position
+     * @param rows - number of rows
+     * @param cols - number of columns
+     * @return - rows of matrix
+     */
+    private static ArrayList<BitSet> readMatrix(ByteBuffer in, int rows, int cols) {
+        ArrayList<BitSet> matrix = new ArrayList<>();
+        long[] words = new long[BitMatrix.words(cols)];
+
+        for (int row = 0; row < rows; row++) {
+            for (int w = 0; w < words.length; w++) words[w] = in.getLong();
+            matrix.add(BitSet.valueOf(words));
+        }
+        return matrix;
+    }
+
+    /**
+     * Rounds a number of bytes up to a whole number of longs
+     * @param bytes - number of bytes
+     * @return - rounded number of bytes
+     */
+    private static int align(int bytes) {
+        return (bytes + Long.BYTES - 1) & -Long.BYTES;
+    }
+
     /**
      * Generates a matrix with a fixed value of r and variable value of k
      * @k - k value of matrix
@@ -71,6 +349,181 @@ public class ReedMullerCode extends ECC {
         return matrix;
     }
 
+    /**
+     * Orders the evaluation points so that those with at most r variables set come first.
+     * The monomials of degree at most r are independent on these points, so once they are first
+     * standardise finds its identity without swapping columns, and each plaintext block is the
+     * value of its codeword at these points.
+     * @param r - degree of code
+     * @return - evaluation point for each column
+     */
+    private int[] informationSetFirst(int r) {
+        int[] order = new int[getLength()];
+        int index = 0;
+
+        for (int x = 0; x < getLength(); x++) {
+            if (Integer.bitCount(x) <= r) order[index++] = x;
+        }
+        for (int x = 0; x < getLength(); x++) {
+            if (Integer.bitCount(x) > r) order[index++] = x;
+        }
+
+        return order;
+    }
+
+    /**
+     * Rearranges the columns of a matrix
+     * @param matrix - matrix to rearrange
+     * @param order - column to move into each position
+     */
+    private void permuteColumns(ArrayList<BitSet> matrix, int[] order) {
+        for (int row = 0; row < matrix.size(); row++) {
+            BitSet permuted = new BitSet(getLength());
+
+            for (int col = 0; col < getLength(); col++) {
+                permuted.set(col, matrix.get(row).get(order[col]));
+            }
+
+            matrix.set(row, permuted);
+        }
+    }
+
+    /**
+     * Encodes a single block with the recursive Plotkin construction, when that is cheaper than the generator matrix.
+     * The block gives the codeword's values on the first (information set) points, and since those points
+     * have at most r variables set, transforming them gives the right coefficient for every monomial of degree
+     * at most r. Clearing the higher degree coefficients and transforming back gives the codeword.
+     * @param message - packed block of plaintext
+     * @param codeword - packed encoded block in standard form, overwritten
+     */
+    @Override
+    protected void encodeBlock(long[] message, long[] codeword) {
+        if (!plotkinEncoding) {
+            super.encodeBlock(message, codeword);
+            return;
+        }
+
+        long[] values = plotkinBuffer.get();
+        int dim = getDimension();
+
+        Arrays.fill(values, 0);
+        for (int j = 0; j < dim; j += 64) {
+            for (long bits = BitBuffer.extract(message, j, Math.min(64, dim - j)); bits != 0; bits &= bits - 1) {
+                int point = points[j + Long.numberOfTrailingZeros(bits)];
+                values[point >>> 6] |= 1L << point;
+            }
+        }
+
+        plotkin(values);
+        for (int w = 0; w < values.length; w++) values[w] &= lowDegree[w];
+        plotkin(values);
+
+        //The standard form is systematic, so only the parity positions, at the points of higher degree, need to be moved
+        for (int w = 0; w < codeword.length; w++) {
+            codeword[w] = w < BitMatrix.words(dim) ? message[w] : 0;
+        }
+        if (dim < codeword.length << 6) codeword[dim >>> 6] &= BitMatrix.mask(dim & 63);
+
+        for (int w = 0; w < values.length; w++) {
+            for (long bits = values[w] & ~lowDegree[w]; bits != 0; bits &= bits - 1) {
+                int pos = positions[(w << 6) + Long.numberOfTrailingZeros(bits)];
+                codeword[pos >>> 6] |= 1L << pos;
+            }
+        }
+    }
+
+    /**
+     * Copies this code to encode blocks either by the Plotkin construction or by the parity part of the generator matrix,
+     * which give the same codetext. Each code starts with whichever plotkinCheaper estimates to be faster.
+     * @param plotkin - true to encode by the Plotkin construction
+     * @return - copy of code
+     */
+    public ReedMullerCode withPlotkinEncoding(boolean plotkin) {
+        ReedMullerCode code = (ReedMullerCode) copy();
+        code.plotkinEncoding = plotkin;
+        return code;
+    }
+
+    /**
+     * Compares the work of encoding a block by the Plotkin construction, which moves each set bit of the block
+     * and of its parity one at a time (about three word operations for each of n / 2 bits on average) and transforms
+     * each word of the block twice per variable, with the work of multiplying the block by the parity part of
+     * the generator matrix, which XORs in a row of parity words for each set bit of the block (half of them on average).
+     * By this measure the product is cheaper for codes up to length 512, and for longer codes of low degree or
+     * with few parity bits, such as RM(10, 3) and RM(12, 10), which agrees with the encode benchmarks.
+     * @return - true if the Plotkin construction is cheaper
+     */
+    private boolean plotkinCheaper() {
+        int k = Integer.numberOfTrailingZeros(getLength());
+        long plotkinCost = 3L * getLength() / 2 + 2L * k * BitMatrix.words(getLength());
+        long matrixCost = (long) getDimension() / 2 * BitMatrix.words(getLength() - getDimension());
+        return plotkinCost < matrixCost;
+    }
+
+    /**
+     * Converts a plaintext message into codetext, either in the standard form used by encode
+     * or as plain Reed-Muller codewords.
+     * Without the standard form, each block holds the coefficients of the monomials (in order of degree)
+     * and each encoded block holds the codeword's value at each evaluation point in turn.
+     * Only systematic codetext can be decoded by this class.
+     * @param plaintext the binary input
+     * @param len the length of the plaintext
+     * @param systematic true for the same codetext as encode
+     * @return codetext
+     */
+    public BitSet encode(BitSet plaintext, int len, boolean systematic) {
+        if (systematic) return encode(plaintext, len);
+
+        int blocks = (len + getDimension() - 1) / getDimension();
+        long[] message = Arrays.copyOf(BitMatrix.toWords(plaintext, len), BitMatrix.words(blocks * getDimension()));
+        long[] codetext = new long[BitMatrix.words(blocks * getLength())];
+        long[] values = new long[BitMatrix.words(getLength())];
+        int[] order = Arrays.stream(monomials).flatMapToInt(Arrays::stream).toArray();
+
+        for (int i = 0; i < blocks; i++) {
+            Arrays.fill(values, 0);
+
+            //Sets the coefficient of each monomial, taking the block's set bits a word at a time
+            for (int j = 0; j < getDimension(); j += 64) {
+                long bits = BitBuffer.extract(message, i * getDimension() + j, Math.min(64, getDimension() - j));
+                for (; bits != 0; bits &= bits - 1) {
+                    int monomial = order[j + Long.numberOfTrailingZeros(bits)];
+                    values[monomial >>> 6] |= 1L << monomial;
+                }
+            }
+
+            plotkin(values);
+            BitBuffer.copy(values, 0, codetext, i * getLength(), getLength());
+        }
+
+        return BitSet.valueOf(codetext);
+    }
+
+    /**
+     * Applies the Plotkin construction (u | u + v) at every level to a vector indexed by evaluation point, in place.
+     * Applied to the coefficients of the monomials (indexed by the variables they multiply) it gives
+     * the codeword, and as it is its own inverse, applied to a codeword it gives the coefficients.
+     * Each level XORs the lower half of every block of points into the upper half, using shifts within
+     * a word for the first six levels and whole words above that, so a vector takes O(n log n / 64) operations.
+     * @param values - packed vector indexed by evaluation point
+     */
+    private void plotkin(long[] values) {
+        int k = Integer.numberOfTrailingZeros(getLength());
+
+        for (int i = 0; i < Math.min(k, 6); i++) {
+            for (int w = 0; w < values.length; w++) {
+                values[w] ^= (values[w] & LOWER_HALVES[i]) << (1 << i);
+            }
+        }
+
+        for (int i = 6; i < k; i++) {
+            int stride = 1 << (i - 6);
+            for (int w = 0; w < values.length; w++) {
+                if ((w & stride) != 0) values[w] ^= values[w ^ stride];
+            }
+        }
+    }
+
     /**
      * Flips and mirrors the rows of a given matrix
      * @param matrix
@@ -189,6 +642,145 @@ public class ReedMullerCode extends ECC {
     }
 
 
+    /**
+     * Lists the monomials of each degree up to r, each as a mask of the variables it multiplies
+     * @param k - number of variables
+     * @param r - highest degree
+     * @return - monomials indexed by degree
+     */
+    private int[][] genMonomials(int k, int r) {
+        int[][] monomials = new int[r + 1][];
+
+        for (int d = 0; d <= r; d++) {
+            monomials[d] = new int[(int) binomial(k, d)];
+            for (int mask = 0, i = 0; mask < (1 << k); mask++) {
+                if (Integer.bitCount(mask) == d) monomials[d][i++] = mask;
+            }
+        }
+
+        return monomials;
+    }
+
+    /**
+     * Corrects a block to a closest codeword, using the fast Hadamard transform for first order codes
+     * @param block - packed block to correct in place
+     * @param unique - true if the block may only be corrected to a unique closest codeword within (d - 1) / 2
+     * @return - CLEAN if the block was already a codeword, CORRECTED if it was corrected, or UNCORRECTABLE if it could not be
+     */
+    @Override
+    protected int correctBlock(long[] block, boolean unique) {
+        if (degree == 1) {
+            return correctByTransform(block, unique);
+        } else {
+            return super.correctBlock(block, unique);
+        }
+    }
+
+    /**
+     * Corrects a block of a first order code to a closest codeword using the fast Walsh-Hadamard transform.
+     * First order codewords are the affine functions a.x + c of the evaluation point x. Taking the received
+     * bits as +1/-1 values, the transform at a gives n - 2 * (distance to a.x), so the largest magnitude picks
+     * out the closest codeword, with c = 1 if it is negative. This takes O(n log n) time.
+     * @param block - packed block to correct in place
+     * @param unique - true if the block may only be corrected to a unique closest codeword within (d - 1) / 2
+     * @return - CLEAN if the block was already a codeword, CORRECTED if it was corrected, or UNCORRECTABLE if it could not be
+     */
+    private int correctByTransform(long[] block, boolean unique) {
+        int[] transform = transformBuffer.get();
+        int n = getLength();
+
+        for (int pos = 0; pos < n; pos++) {
+            transform[points[pos]] = 1 - 2 * (int) ((block[pos >>> 6] >>> pos) & 1);
+        }
+
+        for (int half = 1; half < n; half <<= 1) {
+            for (int start = 0; start < n; start += half << 1) {
+                for (int x = start; x < start + half; x++) {
+                    int sum = transform[x];
+                    int diff = transform[x + half];
+                    transform[x] = sum + diff;
+                    transform[x + half] = sum - diff;
+                }
+            }
+        }
+
+        int best = 0;
+        for (int a = 1; a < n; a++) {
+            if (Math.abs(transform[a]) > Math.abs(transform[best])) best = a;
+        }
+
+        //Replaces the block with the closest codeword
+        int constant = transform[best] < 0 ? 1 : 0;
+        for (int pos = 0; pos < n; pos++) {
+            long bit = (Integer.bitCount(best & points[pos]) & 1) ^ constant;
+            block[pos >>> 6] = (block[pos >>> 6] & ~(1L << pos)) | (bit << pos);
+        }
+
+        int distance = (n - Math.abs(transform[best])) / 2;
+        if (distance == 0) return CLEAN;
+        return !unique || distance <= (getDistance() - 1) / 2 ? CORRECTED : UNCORRECTABLE;
+    }
+
+    /**
+     * Corrects a block by majority-logic (Reed) decoding rather than a syndrome table.
+     * The coefficient of each monomial is found, highest degree first, by a majority vote over the
+     * cosets of the subspace spanned by its variables: the sum of the received bits over a coset
+     * equals the coefficient unless errors disturb it. The monomial is then subtracted from the received
+     * bits, so that what is left after the constant term is the error pattern.
+     * Majority logic finds every error of up to (d - 1) / 2 bits, and such an error is the unique closest one.
+     * A heavier error left over is not always the lightest with its syndrome, so then the block is rejected if
+     * it must be unique, and otherwise corrected to the codeword majority logic found, which need not be a closest one.
+     * @param syndrome - packed syndrome of block
+     * @param block - packed block to correct in place
+     * @param unique - true if the block may only be corrected to a unique closest codeword within (d - 1) / 2
+     * @return - true if the block was corrected
+     */
+    @Override
+    protected boolean correctMissing(long[] syndrome, long[] block, boolean unique) {
+        byte[][] buffers = majorityBuffers.get();
+        byte[] bits = buffers[0];
+        byte[] parity = buffers[1];
+        int n = getLength();
+
+        //Lays the block out by evaluation point
+        for (int pos = 0; pos < n; pos++) {
+            bits[points[pos]] = (byte) ((block[pos >>> 6] >>> pos) & 1);
+        }
+
+        for (int d = degree; d >= 0; d--) {
+            int cosets = n >>> d;
+
+            for (int monomial : monomials[d]) {
+                int coset = (n - 1) & ~monomial;
+                int votes = 0;
+
+                for (int x = 0; x < n; x++) parity[x & coset] = 0;
+                for (int x = 0; x < n; x++) parity[x & coset] ^= bits[x];
+                for (int x = 0; x < n; x++) {
+                    if ((x & monomial) == 0) votes += parity[x];
+                }
+
+                //Subtracts the monomial if most cosets vote for it
+                if (votes * 2 > cosets) {
+                    for (int x = 0; x < n; x++) {
+                        if ((x & monomial) == monomial) bits[x] ^= 1;
+                    }
+                }
+            }
+        }
+
+        //What is left is the error pattern
+        int weight = 0;
+        for (int x = 0; x < n; x++) weight += bits[x];
+
+        if (unique && weight > (getDistance() - 1) / 2) return false;
+
+        for (int pos = 0; pos < n; pos++) {
+            block[pos >>> 6] ^= (long) bits[points[pos]] << pos;
+        }
+        return true;
+    }
+
     /**
      * Calulates the dimension of Reed-Muller code using the sum of k choose i in the range i = 0 to r
      * @param r
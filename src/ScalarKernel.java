@@ -0,0 +1,37 @@
+/**
+ * GF(2) products a word at a time, visiting only the set bits of the vector for left products
+ * and counting bits with Long.bitCount for right products.
+ */
+public class ScalarKernel implements GF2Kernel {
+
+    @Override
+    public void leftMultiply(long[] data, int rows, int words, long[] vector, long[] result) {
+        for (int w = 0; w < words; w++) result[w] = 0;
+
+        for (int vw = 0; vw < BitMatrix.words(rows); vw++) {
+            long bits = vector[vw];
+            if ((vw + 1) << 6 > rows) bits &= BitMatrix.mask(rows - (vw << 6));
+
+            while (bits != 0) {
+                int offset = ((vw << 6) + Long.numberOfTrailingZeros(bits)) * words;
+                for (int w = 0; w < words; w++) {
+                    result[w] ^= data[offset + w];
+                }
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    @Override
+    public void rightMultiply(long[] data, int rows, int words, long[] vector, long[] result) {
+        for (int w = 0; w < BitMatrix.words(rows); w++) result[w] = 0;
+
+        for (int row = 0, offset = 0; row < rows; row++, offset += words) {
+            int count = 0;
+            for (int w = 0; w < words; w++) {
+                count += Long.bitCount(data[offset + w] & vector[w]);
+            }
+            result[row >>> 6] |= (long) (count & 1) << row;
+        }
+    }
+}
@@ -0,0 +1,504 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * Maps syndromes to coset leaders (error patterns) using primitive arrays.
+ *
+ * Syndromes of up to DIRECT_BITS bits are used directly as an index into a flat array of coset leaders.
+ * Wider syndromes are stored in an open-addressing hash table with linear probing, where the packed
+ * syndrome words and coset leader words of each entry are held in flat long buffers.
+ * The zero syndrome always maps to the zero coset leader.
+ * A table can be written out and mapped back in, and read-only views of a table (which every code keeps,
+ * as does a mapped table) throw ReadOnlyBufferException if they are changed.
+ */
+public class SyndromeTable {
+    public static final int DIRECT_BITS = 24;
+    public static final int NONE = -1;
+    static final int HEADER_BYTES = 8 * Integer.BYTES;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final int synWords;
+    private final int codeWords;
+    private final boolean direct;
+    private final int slotMask;
+    private final LongBuffer keys;
+    private final LongBuffer leaders;
+    private int size;
+    private int coveredWeight;
+
+    /**
+     * Constructor for SyndromeTable class
+     * @param synBits - number of bits in a syndrome (n - k)
+     * @param codeBits - number of bits in a coset leader (n)
+     * @param expected - number of entries the table will hold
+     */
+    public SyndromeTable(int synBits, int codeBits, int expected) {
+        this(synBits, codeBits, expected,
+                synBits <= DIRECT_BITS && directBytes(synBits, codeBits) <= hashedBytes(synBits, codeBits, expected));
+    }
+
+    /**
+     * Constructor for SyndromeTable class with a given layout
+     * @param synBits - number of bits in a syndrome (n - k)
+     * @param codeBits - number of bits in a coset leader (n)
+     * @param expected - number of entries the table will hold
+     * @param direct - true to index the table directly by syndrome
+     */
+    private SyndromeTable(int synBits, int codeBits, int expected, boolean direct) {
+        this.synWords = BitMatrix.words(synBits);
+        this.codeWords = BitMatrix.words(codeBits);
+        this.direct = direct;
+
+        if (direct) {
+            //One coset leader per possible syndrome, indexed by the syndrome itself
+            this.slotMask = (1 << synBits) - 1;
+            this.keys = null;
+            this.leaders = LongBuffer.allocate((slotMask + 1) * codeWords);
+        } else {
+            //Leaves an extra leader slot at the end for the zero syndrome
+            int capacity = (int) capacity(expected);
+            this.slotMask = capacity - 1;
+            this.keys = LongBuffer.allocate(capacity * synWords);
+            this.leaders = LongBuffer.allocate((capacity + 1) * codeWords);
+        }
+        this.size = 1;
+    }
+
+    /**
+     * Constructor for SyndromeTable class over existing buffers
+     * @param synWords - number of words in a syndrome
+     * @param codeWords - number of words in a coset leader
+     * @param direct - true to index the table directly by syndrome
+     * @param slotMask - number of slots less one
+     * @param size - number of syndromes in the table
+     * @param coveredWeight - weight up to which every error pattern is in the table
+     * @param keys - packed syndromes of the hashed layout, or null
+     * @param leaders - packed coset leaders
+     */
+    private SyndromeTable(int synWords, int codeWords, boolean direct, int slotMask, int size, int coveredWeight,
+                          LongBuffer keys, LongBuffer leaders) {
+        this.synWords = synWords;
+        this.codeWords = codeWords;
+        this.direct = direct;
+        this.slotMask = slotMask;
+        this.size = size;
+        this.coveredWeight = coveredWeight;
+        this.keys = keys;
+        this.leaders = leaders;
+    }
+
+    /**
+     * Gives a view of this table that cannot be changed, sharing its entries.
+     * Every code keeps only such a view, so that its table can be read by many threads at once.
+     * @return - read-only table
+     */
+    public SyndromeTable readOnly() {
+        return new SyndromeTable(synWords, codeWords, direct, slotMask, size, coveredWeight,
+                direct ? null : keys.asReadOnlyBuffer(), leaders.asReadOnlyBuffer());
+    }
+
+    /**
+     * @return - number of bytes written by write
+     */
+    public long serialisedBytes() {
+        long words = leaders.capacity() + (direct ? 0 : keys.capacity());
+        return HEADER_BYTES + words * Long.BYTES;
+    }
+
+    /**
+     * Writes the table to a buffer: a header of ints giving the layout, then the keys (if hashed)
+     * and leaders as little-endian longs
+     * @param buffer - buffer to write to, from its position
+     */
+    public void write(ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(synWords).putInt(codeWords).putInt(direct ? 1 : 0).putInt(slotMask);
+        buffer.putInt(size).putInt(coveredWeight);
+        buffer.putInt(direct ? 0 : keys.capacity()).putInt(leaders.capacity());
+
+        LongBuffer words = buffer.asLongBuffer();
+        if (!direct) words.put(keys.duplicate().clear());
+        words.put(leaders.duplicate().clear());
+        buffer.position(buffer.position() + words.position() * Long.BYTES);
+    }
+
+    /**
+     * Reads a table written by write without copying it, so that a table in a mapped file
+     * is shared with every other process that maps it. The table is read-only.
+     * @param buffer - buffer to read from its position, which is moved past the table
+     * @return - syndrome table
+     */
+    public static SyndromeTable read(ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int synWords = buffer.getInt();
+        int codeWords = buffer.getInt();
+        boolean direct = buffer.getInt() != 0;
+        int slotMask = buffer.getInt();
+        int size = buffer.getInt();
+        int coveredWeight = buffer.getInt();
+        int keyWords = buffer.getInt();
+        int leaderWords = buffer.getInt();
+
+        LongBuffer keys = null;
+        if (!direct) {
+            keys = slice(buffer, keyWords);
+        }
+        LongBuffer leaders = slice(buffer, leaderWords);
+
+        return new SyndromeTable(synWords, codeWords, direct, slotMask, size, coveredWeight, keys, leaders);
+    }
+
+    /**
+     * Takes a read-only view of the next words of a buffer
+     * @param buffer - buffer to read from its position, which is moved past the words
+     * @param words - number of longs
+     * @return - view of the words
+     */
+    private static LongBuffer slice(ByteBuffer buffer, int words) {
+        ByteBuffer bytes = buffer.slice().limit(words * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(buffer.position() + words * Long.BYTES);
+        return bytes.asLongBuffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * Builds a table holding a minimum weight coset leader for every possible syndrome.
+     * Syndromes are visited breadth first from the zero syndrome, each step flipping one more bit
+     * of the coset leader, so the first leader to reach a syndrome is one of least weight.
+     * @param synBits - number of bits in a syndrome (at most DIRECT_BITS)
+     * @param codeBits - number of bits in a coset leader
+     * @param parityRows - parity check matrix, one row per bit of a coset leader
+     * @return - complete syndrome table
+     */
+    public static SyndromeTable complete(int synBits, int codeBits, BitMatrix parityRows) {
+        SyndromeTable synTable = new SyndromeTable(synBits, codeBits, 1 << synBits, true);
+        int codeWords = synTable.codeWords;
+        int[] columns = new int[codeBits];
+        long[] syndrome = new long[synTable.synWords];
+
+        //Gets the syndrome of each single bit error
+        for (int pos = 0; pos < codeBits; pos++) {
+            if (syndrome.length > 0) {
+                syndrome[0] = 0;
+                parityRows.xorRow(pos, syndrome);
+                columns[pos] = (int) syndrome[0];
+            }
+        }
+
+        int[] queue = new int[1 << synBits];
+        long[] visited = new long[Math.max(1, queue.length >>> 6)];
+        visited[0] = 1;
+        int head = 0;
+        int tail = 1;
+        int weight = 0;
+
+        //Each pass of the outer loop takes every syndrome whose leader has the current weight
+        while (head < tail && synTable.size < queue.length) {
+            int layerEnd = tail;
+            weight++;
+
+            for (; head < layerEnd && synTable.size < queue.length; head++) {
+                int from = queue[head];
+
+                for (int pos = 0; pos < codeBits; pos++) {
+                    int to = from ^ columns[pos];
+                    if ((visited[to >>> 6] & (1L << to)) != 0) continue;
+
+                    visited[to >>> 6] |= 1L << to;
+                    for (int w = 0; w < codeWords; w++) {
+                        long word = synTable.leaders.get(from * codeWords + w);
+                        if (w == pos >>> 6) word ^= 1L << pos;
+                        synTable.leaders.put(to * codeWords + w, word);
+                    }
+                    synTable.size++;
+                    queue[tail++] = to;
+                }
+            }
+        }
+        synTable.setCoveredWeight(weight);
+
+        return synTable;
+    }
+
+    /**
+     * Estimates the memory needed to build a complete table
+     * @param synBits - number of bits in a syndrome
+     * @param codeBits - number of bits in a coset leader
+     * @return - size of the table arrays in bytes, or Long.MAX_VALUE if too wide to index directly
+     */
+    public static long completeBytes(int synBits, int codeBits) {
+        if (synBits > DIRECT_BITS) return Long.MAX_VALUE;
+        return directBytes(synBits, codeBits) + ((long) Integer.BYTES << synBits) + ((1L << synBits) >>> 3);
+    }
+
+    /**
+     * @return - true if every possible syndrome is in the table
+     */
+    public boolean isComplete() {
+        return direct && size == slotMask + 1;
+    }
+
+    /**
+     * Gets the weight of the coset leader in a slot
+     * @param slot - slot returned by find
+     * @return - number of set bits in the coset leader
+     */
+    public int leaderWeight(int slot) {
+        int weight = 0;
+        for (int w = 0, offset = slot * codeWords; w < codeWords; w++) {
+            weight += Long.bitCount(leaders.get(offset + w));
+        }
+        return weight;
+    }
+
+    /**
+     * @return - number of syndromes in the table (including the zero syndrome)
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return - weight up to which every error pattern has its syndrome in the table
+     */
+    public int getCoveredWeight() {
+        return coveredWeight;
+    }
+
+    /**
+     * Sets the weight up to which every error pattern is in the table, once the table is built
+     * @param coveredWeight - weight of the heaviest error patterns all added
+     * @throws ReadOnlyBufferException - if the table is read-only
+     */
+    void setCoveredWeight(int coveredWeight) {
+        if (leaders.isReadOnly()) throw new ReadOnlyBufferException();
+        this.coveredWeight = coveredWeight;
+    }
+
+    /**
+     * @return - true if syndromes index the table directly
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * Adds a coset leader for a syndrome if the syndrome is not already in the table
+     * @param syndrome - packed syndrome
+     * @param leader - packed coset leader
+     * @return - true if the entry was added
+     */
+    public boolean put(long[] syndrome, long[] leader) {
+        if (isZero(syndrome, synWords)) return false;
+
+        int slot;
+        if (direct) {
+            slot = index(syndrome);
+            if (isUsed(slot)) return false;
+        } else {
+            slot = probe(syndrome);
+            if (!isEmpty(slot)) return false;
+            keys.put(slot * synWords, syndrome, 0, synWords);
+        }
+
+        leaders.put(slot * codeWords, leader, 0, codeWords);
+        size++;
+        return true;
+    }
+
+    /**
+     * Finds the slot holding the coset leader of a syndrome
+     * @param syndrome - packed syndrome
+     * @return - slot of the coset leader, or NONE if the syndrome is not in the table
+     */
+    public int find(long[] syndrome) {
+        if (direct) {
+            int slot = index(syndrome);
+            return isUsed(slot) ? slot : NONE;
+        } else if (isZero(syndrome, synWords)) {
+            return slotMask + 1;
+        } else {
+            int slot = probe(syndrome);
+            return isEmpty(slot) ? NONE : slot;
+        }
+    }
+
+    /**
+     * Applies the coset leader in a slot to a block
+     * @param slot - slot returned by find
+     * @param block - packed block to correct
+     */
+    public void xorLeader(int slot, long[] block) {
+        for (int w = 0, offset = slot * codeWords; w < codeWords; w++) {
+            block[w] ^= leaders.get(offset + w);
+        }
+    }
+
+    /**
+     * Removes a syndrome from the table, shifting back any entries that probed past it
+     * @param syndrome - packed syndrome
+     * @return - true if the syndrome was removed
+     */
+    public boolean remove(long[] syndrome) {
+        int slot = find(syndrome);
+        if (slot == NONE || isZero(syndrome, synWords)) return false;
+
+        clearSlot(slot);
+        size--;
+
+        if (!direct) {
+            //Moves later entries of the probe sequence into the gap so lookups do not stop early
+            int gap = slot;
+            for (int next = (gap + 1) & slotMask; !isEmpty(next); next = (next + 1) & slotMask) {
+                int home = hashKey(next);
+                if (((next - home) & slotMask) >= ((next - gap) & slotMask)) {
+                    for (int w = 0; w < synWords; w++) keys.put(gap * synWords + w, keys.get(next * synWords + w));
+                    for (int w = 0; w < codeWords; w++) leaders.put(gap * codeWords + w, leaders.get(next * codeWords + w));
+                    clearSlot(next);
+                    gap = next;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets every syndrome held in the table
+     * @return - list of syndromes
+     */
+    public ArrayList<BitSet> syndromes() {
+        ArrayList<BitSet> syndromes = new ArrayList<>();
+        syndromes.add(new BitSet());
+
+        for (int slot = 0; slot <= slotMask; slot++) {
+            if (direct && slot != 0 && isUsed(slot)) {
+                syndromes.add(BitSet.valueOf(new long[] {slot}));
+            } else if (!direct && !isEmpty(slot)) {
+                long[] syndrome = new long[synWords];
+                keys.get(slot * synWords, syndrome);
+                syndromes.add(BitSet.valueOf(syndrome));
+            }
+        }
+        return syndromes;
+    }
+
+    /**
+     * Estimates the memory needed for a table, choosing the smaller of the direct and hashed layouts
+     * @param synBits - number of bits in a syndrome
+     * @param codeBits - number of bits in a coset leader
+     * @param entries - number of entries the table will hold
+     * @return - size of the table arrays in bytes
+     */
+    public static long bytes(int synBits, int codeBits, long entries) {
+        long hashed = hashedBytes(synBits, codeBits, entries);
+        return synBits <= DIRECT_BITS ? Math.min(directBytes(synBits, codeBits), hashed) : hashed;
+    }
+
+    private static long directBytes(int synBits, int codeBits) {
+        return (1L << synBits) * BitMatrix.words(codeBits) * Long.BYTES;
+    }
+
+    private static long hashedBytes(int synBits, int codeBits, long entries) {
+        long capacity = capacity(entries);
+        return (capacity * BitMatrix.words(synBits) + (capacity + 1) * BitMatrix.words(codeBits)) * Long.BYTES;
+    }
+
+    /**
+     * Keeps the load factor of the hash table at or below a half
+     * @param entries - number of entries the table will hold
+     * @return - number of slots (a power of two)
+     */
+    private static long capacity(long entries) {
+        return Long.highestOneBit(Math.max(2, entries) * 2 - 1) << 1;
+    }
+
+    /**
+     * Gets the slot of a syndrome in the direct table
+     * @param syndrome - packed syndrome
+     * @return - slot
+     */
+    private int index(long[] syndrome) {
+        return synWords == 0 ? 0 : (int) syndrome[0];
+    }
+
+    /**
+     * Finds the slot of a syndrome in the hash table, or the empty slot where it would be inserted
+     * @param syndrome - packed non-zero syndrome
+     * @return - slot
+     */
+    private int probe(long[] syndrome) {
+        int slot = hash(syndrome);
+
+        while (!isEmpty(slot) && !keyEquals(slot, syndrome)) {
+            slot = (slot + 1) & slotMask;
+        }
+        return slot;
+    }
+
+    private int hash(long[] syndrome) {
+        long h = 0;
+        for (int w = 0; w < synWords; w++) {
+            h = (h ^ syndrome[w]) * HASH_MULTIPLIER;
+        }
+        return (int) (h ^ (h >>> 32)) & slotMask;
+    }
+
+    /**
+     * Hashes the syndrome stored in a slot, as hash does for an unstored syndrome
+     * @param slot - slot of syndrome
+     * @return - home slot of syndrome
+     */
+    private int hashKey(int slot) {
+        long h = 0;
+        for (int w = 0, offset = slot * synWords; w < synWords; w++) {
+            h = (h ^ keys.get(offset + w)) * HASH_MULTIPLIER;
+        }
+        return (int) (h ^ (h >>> 32)) & slotMask;
+    }
+
+    private boolean keyEquals(int slot, long[] syndrome) {
+        for (int w = 0, offset = slot * synWords; w < synWords; w++) {
+            if (keys.get(offset + w) != syndrome[w]) return false;
+        }
+        return true;
+    }
+
+    private boolean isEmpty(int slot) {
+        for (int w = 0, offset = slot * synWords; w < synWords; w++) {
+            if (keys.get(offset + w) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a slot of the direct table holds a coset leader,
+     * which is only zero for the zero syndrome
+     * @param slot - slot to check
+     * @return - true if the slot is in use
+     */
+    private boolean isUsed(int slot) {
+        if (slot == 0) return true;
+
+        for (int w = 0, offset = slot * codeWords; w < codeWords; w++) {
+            if (leaders.get(offset + w) != 0) return true;
+        }
+        return false;
+    }
+
+    private void clearSlot(int slot) {
+        for (int w = 0; w < codeWords; w++) leaders.put(slot * codeWords + w, 0);
+        if (!direct) {
+            for (int w = 0; w < synWords; w++) keys.put(slot * synWords + w, 0);
+        }
+    }
+
+    private static boolean isZero(long[] words, int len) {
+        for (int w = 0; w < len; w++) {
+            if (words[w] != 0) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,116 @@
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * GF(2) products using the incubating Vector API, so that each instruction works on several words.
+ * Right products with one word per row (codes of length up to 64) put a row in each lane, so that one
+ * instruction covers several rows; wider matrices put a word of the same row in each lane.
+ * Anything narrower than a vector falls back to the scalar kernel.
+ * Only loaded by BitMatrix when the jdk.incubator.vector module is present, and compiling it needs
+ * --add-modules jdk.incubator.vector.
+ */
+public class VectorKernel implements GF2Kernel {
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    //Lane numbers, for shifting each row's parity to its place in the result
+    private static final LongVector LANE_INDEX = LongVector.zero(SPECIES).addIndex(1);
+
+    private final ScalarKernel scalar = new ScalarKernel();
+
+    @Override
+    public void leftMultiply(long[] data, int rows, int words, long[] vector, long[] result) {
+        //Masking off unselected rows costs more than the scalar kernel's walk over the selected ones
+        if (words >= LANES) {
+            leftMultiplyWide(data, rows, words, vector, result);
+        } else {
+            scalar.leftMultiply(data, rows, words, vector, result);
+        }
+    }
+
+    @Override
+    public void rightMultiply(long[] data, int rows, int words, long[] vector, long[] result) {
+        if (words == 1) {
+            rightMultiplyNarrow(data, rows, vector, result);
+        } else if (words >= LANES) {
+            rightMultiplyWide(data, rows, words, vector, result);
+        } else {
+            scalar.rightMultiply(data, rows, words, vector, result);
+        }
+    }
+
+    /**
+     * Left product with a word of the selected row in each lane
+     */
+    private void leftMultiplyWide(long[] data, int rows, int words, long[] vector, long[] result) {
+        for (int w = 0; w < words; w++) result[w] = 0;
+        int bound = SPECIES.loopBound(words);
+
+        for (int vw = 0; vw < BitMatrix.words(rows); vw++) {
+            long bits = vector[vw];
+            if ((vw + 1) << 6 > rows) bits &= BitMatrix.mask(rows - (vw << 6));
+
+            while (bits != 0) {
+                int offset = ((vw << 6) + Long.numberOfTrailingZeros(bits)) * words;
+                int w = 0;
+                for (; w < bound; w += LANES) {
+                    LongVector.fromArray(SPECIES, result, w)
+                            .lanewise(VectorOperators.XOR, LongVector.fromArray(SPECIES, data, offset + w))
+                            .intoArray(result, w);
+                }
+                for (; w < words; w++) result[w] ^= data[offset + w];
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    /**
+     * Right product with a row in each lane. There is no lanewise bit count in this release of the API,
+     * so each lane's parity is folded down with shifts and XORs.
+     */
+    private void rightMultiplyNarrow(long[] data, int rows, long[] vector, long[] result) {
+        for (int w = 0; w < BitMatrix.words(rows); w++) result[w] = 0;
+        LongVector column = LongVector.broadcast(SPECIES, vector[0]);
+        int row = 0;
+
+        for (; row < SPECIES.loopBound(rows); row += LANES) {
+            LongVector v = LongVector.fromArray(SPECIES, data, row).lanewise(VectorOperators.AND, column);
+            v = v.lanewise(VectorOperators.XOR, v.lanewise(VectorOperators.LSHR, 32));
+            v = v.lanewise(VectorOperators.XOR, v.lanewise(VectorOperators.LSHR, 16));
+            v = v.lanewise(VectorOperators.XOR, v.lanewise(VectorOperators.LSHR, 8));
+            v = v.lanewise(VectorOperators.XOR, v.lanewise(VectorOperators.LSHR, 4));
+            v = v.lanewise(VectorOperators.XOR, v.lanewise(VectorOperators.LSHR, 2));
+            v = v.lanewise(VectorOperators.XOR, v.lanewise(VectorOperators.LSHR, 1));
+
+            //Moves the parity of each row to its bit of the result, which a chunk of rows never crosses
+            v = v.lanewise(VectorOperators.AND, 1L)
+                    .lanewise(VectorOperators.LSHL, LANE_INDEX.add(row & 63));
+            result[row >>> 6] |= v.reduceLanes(VectorOperators.OR);
+        }
+
+        for (; row < rows; row++) {
+            result[row >>> 6] |= (long) (Long.bitCount(data[row] & vector[0]) & 1) << row;
+        }
+    }
+
+    /**
+     * Right product with a word of the row in each lane
+     */
+    private void rightMultiplyWide(long[] data, int rows, int words, long[] vector, long[] result) {
+        for (int w = 0; w < BitMatrix.words(rows); w++) result[w] = 0;
+        int bound = SPECIES.loopBound(words);
+
+        for (int row = 0, offset = 0; row < rows; row++, offset += words) {
+            LongVector sum = LongVector.zero(SPECIES);
+            int w = 0;
+            for (; w < bound; w += LANES) {
+                sum = sum.lanewise(VectorOperators.XOR, LongVector.fromArray(SPECIES, data, offset + w)
+                        .lanewise(VectorOperators.AND, LongVector.fromArray(SPECIES, vector, w)));
+            }
+
+            long word = sum.reduceLanes(VectorOperators.XOR);
+            for (; w < words; w++) word ^= data[offset + w] & vector[w];
+            result[row >>> 6] |= (long) (Long.bitCount(word) & 1) << row;
+        }
+    }
+}